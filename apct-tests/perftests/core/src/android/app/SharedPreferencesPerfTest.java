@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.perftests.utils.BenchmarkState;
+import android.perftests.utils.PerfStatusReporter;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class SharedPreferencesPerfTest {
+    private static final String PREFS_NAME = "SharedPreferencesPerfTest";
+
+    @Rule
+    public PerfStatusReporter mPerfStatusReporter = new PerfStatusReporter();
+
+    private Context mContext;
+    private SharedPreferences mPrefs;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mPrefs = mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mPrefs.edit().clear().commit();
+    }
+
+    @After
+    public void tearDown() {
+        mPrefs.edit().clear().commit();
+        mContext.deleteSharedPreferences(PREFS_NAME);
+    }
+
+    private void fill(int numKeys) {
+        final SharedPreferences.Editor editor = mPrefs.edit();
+        for (int i = 0; i < numKeys; i++) {
+            editor.putString("key" + i, "value" + i);
+        }
+        editor.commit();
+    }
+
+    private void commitOneKey(int numKeys) {
+        fill(numKeys);
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        int i = 0;
+        while (state.keepRunning()) {
+            mPrefs.edit().putInt("counter", i++).commit();
+        }
+    }
+
+    private void applyBurst(int numKeys, int burst) {
+        fill(numKeys);
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        int i = 0;
+        while (state.keepRunning()) {
+            for (int j = 0; j < burst; j++) {
+                mPrefs.edit().putInt("counter", i++).apply();
+            }
+            // Include the cost an activity pause would see for the pending writes.
+            QueuedWork.waitToFinish();
+        }
+    }
+
+    @Test
+    public void timeCommitSmall() {
+        commitOneKey(10);
+    }
+
+    @Test
+    public void timeCommitLarge() {
+        commitOneKey(1000);
+    }
+
+    @Test
+    public void timeApplyBurstSmall() {
+        applyBurst(10, 10);
+    }
+
+    @Test
+    public void timeApplyBurstLarge() {
+        applyBurst(1000, 10);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.content.pm;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Parcel;
+import android.perftests.utils.BenchmarkState;
+import android.perftests.utils.PerfStatusReporter;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class PackageManagerPerfTest {
+    private static final int LIST_SIZE = 500;
+
+    @Rule
+    public PerfStatusReporter mPerfStatusReporter = new PerfStatusReporter();
+
+    private PackageManager mPackageManager;
+
+    @Before
+    public void setUp() {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mPackageManager = context.getPackageManager();
+    }
+
+    @Test
+    public void timeGetInstalledPackages() {
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            mPackageManager.getInstalledPackages(0);
+        }
+    }
+
+    @Test
+    public void timeQueryLauncherActivities() {
+        final Intent intent = new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_LAUNCHER);
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            mPackageManager.queryIntentActivities(intent, 0);
+        }
+    }
+
+    /**
+     * Round trip of a {@value #LIST_SIZE} entry list through ParceledListSlice,
+     * including the follow-up chunk transactions, without depending on how
+     * many packages the device has installed.
+     */
+    @Test
+    public void timeParceledListSliceRoundTrip() {
+        final List<PackageInfo> list = new ArrayList<>(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            final PackageInfo info = new PackageInfo();
+            info.packageName = "com.example.package" + i;
+            info.versionName = "1.0";
+            info.applicationInfo = new ApplicationInfo();
+            info.applicationInfo.packageName = info.packageName;
+            info.applicationInfo.sourceDir = "/data/app/" + info.packageName + "/base.apk";
+            list.add(info);
+        }
+        final ParceledListSlice<PackageInfo> slice = new ParceledListSlice<>(list);
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            final Parcel parcel = Parcel.obtain();
+            slice.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            ParceledListSlice.CREATOR.createFromParcel(parcel, null);
+            parcel.recycle();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+import android.perftests.utils.BenchmarkState;
+import android.perftests.utils.PerfStatusReporter;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class BundlePerfTest {
+    @Rule
+    public PerfStatusReporter mPerfStatusReporter = new PerfStatusReporter();
+
+    private Parcel mParcel;
+
+    @After
+    public void tearDown() {
+        if (mParcel != null) {
+            mParcel.recycle();
+            mParcel = null;
+        }
+    }
+
+    private void writeBundle(int numKeys) {
+        final Bundle bundle = new Bundle();
+        for (int i = 0; i < numKeys; i++) {
+            switch (i % 4) {
+                case 0: bundle.putInt("int" + i, i); break;
+                case 1: bundle.putString("string" + i, "value" + i); break;
+                case 2: bundle.putLongArray("longs" + i, new long[] { i, i, i, i }); break;
+                case 3: {
+                    final Bundle inner = new Bundle();
+                    inner.putBoolean("flag", true);
+                    bundle.putBundle("bundle" + i, inner);
+                    break;
+                }
+            }
+        }
+        bundle.putBoolean("flag", true);
+        mParcel = Parcel.obtain();
+        mParcel.writeBundle(bundle);
+    }
+
+    private void readOneKey(int numKeys) {
+        writeBundle(numKeys);
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            mParcel.setDataPosition(0);
+            final Bundle bundle = mParcel.readBundle();
+            bundle.getBoolean("flag");
+        }
+    }
+
+    /**
+     * Baseline for {@link #readOneKey}: the raw byte copy readBundle() makes
+     * into a pooled Parcel, released back to the pool the same way unparcel()
+     * does.  A Bundle that is never unparcelled would instead leave its Parcel
+     * to the finalizer and drain the pool, inflating the baseline.
+     */
+    private void copyBundleBytes(int numKeys) {
+        writeBundle(numKeys);
+        final int length = mParcel.dataSize();
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            final Parcel p = Parcel.obtain();
+            p.appendFrom(mParcel, 0, length);
+            p.setDataPosition(0);
+            p.recycle();
+        }
+    }
+
+    @Test
+    public void timeReadOneKeySmall() {
+        readOneKey(8);
+    }
+
+    @Test
+    public void timeReadOneKeyLarge() {
+        readOneKey(400);
+    }
+
+    @Test
+    public void timeCopyBundleBytesSmall() {
+        copyBundleBytes(8);
+    }
+
+    @Test
+    public void timeCopyBundleBytesLarge() {
+        copyBundleBytes(400);
+    }
+}
@@ -112,4 +112,52 @@ public class ParcelPerfTest {
             mParcel.readLong();
         }
     }
+
+    private static final String PACKAGE_NAME = "com.android.providers.settings";
+    private static final int STRING_COUNT = 16;
+
+    @Test
+    public void timeReadString() {
+        for (int i = 0; i < STRING_COUNT; i++) {
+            mParcel.writeString(PACKAGE_NAME);
+        }
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            mParcel.setDataPosition(0);
+            for (int i = 0; i < STRING_COUNT; i++) {
+                mParcel.readString();
+            }
+        }
+    }
+
+    @Test
+    public void timeReadInternedString() {
+        for (int i = 0; i < STRING_COUNT; i++) {
+            mParcel.writeString(PACKAGE_NAME);
+        }
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            mParcel.setDataPosition(0);
+            for (int i = 0; i < STRING_COUNT; i++) {
+                mParcel.readInternedString();
+            }
+        }
+    }
+
+    @Test
+    public void timeReadPooledString() {
+        final PooledStringWriter writer = new PooledStringWriter(mParcel);
+        for (int i = 0; i < STRING_COUNT; i++) {
+            writer.writeString(PACKAGE_NAME);
+        }
+        writer.finish();
+        final BenchmarkState state = mPerfStatusReporter.getBenchmarkState();
+        while (state.keepRunning()) {
+            mParcel.setDataPosition(0);
+            final PooledStringReader reader = new PooledStringReader(mParcel);
+            for (int i = 0; i < STRING_COUNT; i++) {
+                reader.readString();
+            }
+        }
+    }
 }
@@ -710,6 +710,15 @@ final class SharedPreferencesImpl implements SharedPreferences {
             } else {
                 mFile.delete();
             }
+        } else if (!isFromSyncCommit) {
+            synchronized (mLock) {
+                // Nothing on disk yet, but a newer state is already queued and will create the
+                // file. Don't write out every intermediate state of a burst of applies.
+                if (mCurrentMemoryStateGeneration > mcr.memoryStateGeneration) {
+                    mcr.setDiskWriteResult(false, true);
+                    return;
+                }
+            }
         }
 
         // Attempt to write the file, delete the backup and return true as atomically as
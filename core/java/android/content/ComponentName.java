@@ -350,7 +350,7 @@ public final class ComponentName implements Parcelable, Cloneable, Comparable<Co
      * @see #writeToParcel(ComponentName, Parcel)
      */
     public static ComponentName readFromParcel(Parcel in) {
-        String pkg = in.readString();
+        String pkg = in.readInternedString();
         return pkg != null ? new ComponentName(pkg, in) : null;
     }
     
@@ -376,7 +376,7 @@ public final class ComponentName implements Parcelable, Cloneable, Comparable<Co
      * positioned at the location in the buffer where it was written.
      */
     public ComponentName(Parcel in) {
-        mPackage = in.readString();
+        mPackage = in.readInternedString();
         if (mPackage == null) throw new NullPointerException(
                 "package name is null");
         mClass = in.readString();
@@ -388,7 +388,7 @@ public class PackageItemInfo {
 
     protected PackageItemInfo(Parcel source) {
         name = source.readString();
-        packageName = source.readString();
+        packageName = source.readInternedString();
         labelRes = source.readInt();
         nonLocalizedLabel
                 = TextUtils.CHAR_SEQUENCE_CREATOR.createFromParcel(source);
@@ -119,6 +119,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.ZipEntry;
 
@@ -317,6 +318,9 @@ public class PackageParser {
     private int mParseError = PackageManager.INSTALL_SUCCEEDED;
 
     private static boolean sCompatibilityModeEnabled = true;
+
+    /** Number of packages that were served from the parsed package cache. */
+    private static final AtomicInteger sCachedPackageReadCount = new AtomicInteger();
     private static final int PARSE_DEFAULT_INSTALL_LOCATION =
             PackageInfo.INSTALL_LOCATION_UNSPECIFIED;
     private static final int PARSE_DEFAULT_TARGET_SANDBOX = 1;
@@ -1076,6 +1080,7 @@ public class PackageParser {
                     }
                 }
             }
+            sCachedPackageReadCount.incrementAndGet();
             return p;
         } catch (Exception e) {
             Slog.w(TAG, "Error reading package cache: ", e);
@@ -7381,6 +7386,14 @@ public class PackageParser {
         sCompatibilityModeEnabled = compatibilityModeEnabled;
     }
 
+    /**
+     * Returns the number of packages that were served from the parsed package cache.
+     * @hide
+     */
+    public static int getCachedPackageReadCount() {
+        return sCachedPackageReadCount.get();
+    }
+
     private static AtomicReference<byte[]> sBuffer = new AtomicReference<byte[]>();
 
     public static long readFullyIgnoringContents(InputStream in) throws IOException {
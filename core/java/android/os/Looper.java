@@ -24,6 +24,8 @@ import android.util.Printer;
 import android.util.Slog;
 import android.util.proto.ProtoOutputStream;
 
+import com.android.internal.util.ExponentiallyBucketedHistogram;
+
 /**
   * Class used to run a message loop for a thread.  Threads by default do
   * not have a message loop associated with them; to create one, call
@@ -80,6 +82,9 @@ public final class Looper {
     /* If set, the looper will show a warning log if a message dispatch takes longer than time. */
     private long mSlowDispatchThresholdMs;
 
+    /* If set, a sample of dispatches is recorded and shown in dump(). */
+    private volatile DispatchStats mDispatchStats;
+
      /** Initialize the current thread as a looper.
       * This gives you a chance to create handlers that then reference
       * this looper, before actually starting the loop. Be sure to call
@@ -153,16 +158,19 @@ public final class Looper {
             }
 
             final long slowDispatchThresholdMs = me.mSlowDispatchThresholdMs;
+            final DispatchStats dispatchStats = me.mDispatchStats;
+            final boolean sampled = dispatchStats != null && dispatchStats.shouldSample();
+            final boolean needTime = slowDispatchThresholdMs != 0 || sampled;
 
             final long traceTag = me.mTraceTag;
             if (traceTag != 0 && Trace.isTagEnabled(traceTag)) {
                 Trace.traceBegin(traceTag, msg.target.getTraceName(msg));
             }
-            final long start = (slowDispatchThresholdMs == 0) ? 0 : SystemClock.uptimeMillis();
+            final long start = needTime ? SystemClock.uptimeMillis() : 0;
             final long end;
             try {
                 msg.target.dispatchMessage(msg);
-                end = (slowDispatchThresholdMs == 0) ? 0 : SystemClock.uptimeMillis();
+                end = needTime ? SystemClock.uptimeMillis() : 0;
             } finally {
                 if (traceTag != 0) {
                     Trace.traceEnd(traceTag);
@@ -177,6 +185,10 @@ public final class Looper {
                 }
             }
 
+            if (sampled) {
+                dispatchStats.add(msg, start, end);
+            }
+
             if (logging != null) {
                 logging.println("<<<<< Finished to " + msg.target + " " + msg.callback);
             }
@@ -248,6 +260,19 @@ public final class Looper {
         mSlowDispatchThresholdMs = slowDispatchThresholdMs;
     }
 
+    /**
+     * Record the queueing delay and execution time of a sample of the messages
+     * dispatched by this looper, and show them in {@link #dump}.
+     * {@hide}
+     */
+    public void setDispatchStatsEnabled(boolean enabled) {
+        if (!enabled) {
+            mDispatchStats = null;
+        } else if (mDispatchStats == null) {
+            mDispatchStats = new DispatchStats();
+        }
+    }
+
     /**
      * Quits the looper.
      * <p>
@@ -310,6 +335,7 @@ public final class Looper {
      */
     public void dump(@NonNull Printer pw, @NonNull String prefix) {
         pw.println(prefix + toString());
+        dumpDispatchStats(pw, prefix + "  ");
         mQueue.dump(pw, prefix + "  ", null);
     }
 
@@ -323,9 +349,17 @@ public final class Looper {
      */
     public void dump(@NonNull Printer pw, @NonNull String prefix, Handler handler) {
         pw.println(prefix + toString());
+        dumpDispatchStats(pw, prefix + "  ");
         mQueue.dump(pw, prefix + "  ", handler);
     }
 
+    private void dumpDispatchStats(Printer pw, String prefix) {
+        final DispatchStats dispatchStats = mDispatchStats;
+        if (dispatchStats != null) {
+            dispatchStats.dump(pw, prefix);
+        }
+    }
+
     /** @hide */
     public void writeToProto(ProtoOutputStream proto, long fieldId) {
         final long looperToken = proto.start(fieldId);
@@ -336,6 +370,62 @@ public final class Looper {
         proto.end(looperToken);
     }
 
+    /**
+     * Sampled dispatch statistics.  Samples are taken and recorded on the looper
+     * thread without allocating; only dump() runs elsewhere.
+     */
+    private static final class DispatchStats {
+        // Record one in this many dispatches; must be a power of two.
+        private static final int SAMPLE_INTERVAL = 16;
+        private static final int HISTOGRAM_BUCKETS = 16;
+
+        // Only touched on the looper thread.
+        private int mDispatchCount;
+
+        private final ExponentiallyBucketedHistogram mDelayTimes =
+                new ExponentiallyBucketedHistogram(HISTOGRAM_BUCKETS);
+        private final ExponentiallyBucketedHistogram mExecTimes =
+                new ExponentiallyBucketedHistogram(HISTOGRAM_BUCKETS);
+        private int mNumSamples;
+        private long mMaxExecMs;
+        private Class<?> mMaxExecTarget;
+        private Class<?> mMaxExecCallback;
+        private int mMaxExecWhat;
+
+        boolean shouldSample() {
+            return (++mDispatchCount & (SAMPLE_INTERVAL - 1)) == 0;
+        }
+
+        synchronized void add(Message msg, long start, long end) {
+            mNumSamples++;
+            // Messages posted at the front of the queue have no target time.
+            if (msg.when != 0) {
+                mDelayTimes.add((int) Math.min(Integer.MAX_VALUE, start - msg.when));
+            }
+            final long execMs = end - start;
+            mExecTimes.add((int) Math.min(Integer.MAX_VALUE, execMs));
+            if (execMs > mMaxExecMs) {
+                mMaxExecMs = execMs;
+                mMaxExecTarget = msg.target.getClass();
+                mMaxExecCallback = msg.callback != null ? msg.callback.getClass() : null;
+                mMaxExecWhat = msg.what;
+            }
+        }
+
+        synchronized void dump(Printer pw, String prefix) {
+            pw.println(prefix + "Dispatch stats: " + mNumSamples + " samples, 1 in "
+                    + SAMPLE_INTERVAL);
+            mDelayTimes.dump(pw, prefix + "  Delay ms: ");
+            mExecTimes.dump(pw, prefix + "  Exec ms: ");
+            if (mMaxExecTarget != null) {
+                pw.println(prefix + "  Slowest: " + mMaxExecMs + "ms h="
+                        + mMaxExecTarget.getName() + " cb="
+                        + (mMaxExecCallback != null ? mMaxExecCallback.getName() : null)
+                        + " msg=" + mMaxExecWhat);
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return "Looper (" + mThread.getName() + ", tid " + mThread.getId()
@@ -209,6 +209,13 @@ public final class Parcel {
     private RuntimeException mStack;
 
     private static final int POOL_SIZE = 6;
+
+    // Small, direct-mapped cache of recently read identifier strings (package
+    // and class names); see readInternedString().  Races between readers just
+    // mean a missed or overwritten slot, which is harmless since Strings are
+    // immutable.
+    private static final int INTERNED_STRING_CACHE_SIZE = 256;
+    private static final String[] sInternedStrings = new String[INTERNED_STRING_CACHE_SIZE];
     private static final Parcel[] sOwnedPool = new Parcel[POOL_SIZE];
     private static final Parcel[] sHolderPool = new Parcel[POOL_SIZE];
 
@@ -1996,6 +2003,28 @@ public final class Parcel {
         return nativeReadString(mNativePtr);
     }
 
+    /**
+     * Read a string value from the parcel at the current dataPosition(),
+     * returning a previously read instance if an equal string was seen
+     * recently.  Use this for values that repeat heavily across transactions
+     * (package names, class names) and are held onto by the caller, so
+     * duplicates are dropped right away instead of piling up in the heap.
+     * @hide
+     */
+    public final String readInternedString() {
+        final String val = nativeReadString(mNativePtr);
+        if (val == null) {
+            return null;
+        }
+        final int index = val.hashCode() & (INTERNED_STRING_CACHE_SIZE - 1);
+        final String cached = sInternedStrings[index];
+        if (val.equals(cached)) {
+            return cached;
+        }
+        sInternedStrings[index] = val;
+        return val;
+    }
+
     /** @hide */
     public final boolean readBoolean() {
         return readInt() != 0;
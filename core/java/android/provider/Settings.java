@@ -1732,6 +1732,10 @@ public final class Settings {
             return -1;
         }
 
+        public int getCurrentGeneration() {
+            return mCurrentGeneration;
+        }
+
         public void destroy() {
             try {
                 mArray.close();
@@ -1822,6 +1826,9 @@ public final class Settings {
 
         public String getStringForUser(ContentResolver cr, String name, final int userHandle) {
             final boolean isSelf = (userHandle == UserHandle.myUserId());
+            // Generation the value we are about to read belongs to; -1 if there is
+            // no tracker yet.
+            int currentGeneration = -1;
             if (isSelf) {
                 synchronized (NameValueCache.this) {
                     if (mGenerationTracker != null) {
@@ -1835,6 +1842,7 @@ public final class Settings {
                         } else if (mValues.containsKey(name)) {
                             return mValues.get(name);
                         }
+                        currentGeneration = mGenerationTracker.getCurrentGeneration();
                     }
                 }
             } else {
@@ -1909,6 +1917,7 @@ public final class Settings {
                                         if (mGenerationTracker != null) {
                                             mGenerationTracker.destroy();
                                         }
+                                        currentGeneration = generation;
                                         mGenerationTracker = new GenerationTracker(array, index,
                                                 generation, () -> {
                                             synchronized (NameValueCache.this) {
@@ -1925,7 +1934,7 @@ public final class Settings {
                                         });
                                     }
                                 }
-                                mValues.put(name, value);
+                                cacheValueLocked(name, value, currentGeneration);
                             }
                         } else {
                             if (LOCAL_LOGV) Log.i(TAG, "call-query of user " + userHandle
@@ -1965,8 +1974,10 @@ public final class Settings {
                 }
 
                 String value = c.moveToNext() ? c.getString(0) : null;
-                synchronized (NameValueCache.this) {
-                    mValues.put(name, value);
+                if (isSelf) {
+                    synchronized (NameValueCache.this) {
+                        cacheValueLocked(name, value, currentGeneration);
+                    }
                 }
                 if (LOCAL_LOGV) {
                     Log.v(TAG, "cache miss [" + mUri.getLastPathSegment() + "]: " +
@@ -1980,6 +1991,26 @@ public final class Settings {
                 if (c != null) c.close();
             }
         }
+
+        /**
+         * Caches a value read from the provider, unless the settings changed while the
+         * read was in flight; the value may then be stale and caching it would hide the
+         * newer one until the next unrelated change.
+         */
+        @GuardedBy("this")
+        private void cacheValueLocked(String name, String value, int readGeneration) {
+            if (mGenerationTracker == null) {
+                // Nothing can invalidate the cache, so don't fill it.
+                return;
+            }
+            if (mGenerationTracker.isGenerationChanged()) {
+                mValues.clear();
+                return;
+            }
+            if (readGeneration == mGenerationTracker.getCurrentGeneration()) {
+                mValues.put(name, value);
+            }
+        }
     }
 
     /**
@@ -5738,15 +5738,8 @@ public class BatteryStatsImpl extends BatteryStats {
                 }
             };
 
-            mWifiRunningTimer = new StopwatchTimer(mBsi.mClocks, this, WIFI_RUNNING,
-                    mBsi.mWifiRunningTimers, mBsi.mOnBatteryTimeBase);
-            mFullWifiLockTimer = new StopwatchTimer(mBsi.mClocks, this, FULL_WIFI_LOCK,
-                    mBsi.mFullWifiLockTimers, mBsi.mOnBatteryTimeBase);
-            mWifiScanTimer = new DualTimer(mBsi.mClocks, this, WIFI_SCAN,
-                    mBsi.mWifiScanTimers, mBsi.mOnBatteryTimeBase, mOnBatteryBackgroundTimeBase);
+            // The wifi timers are created on first use; most uids never touch wifi.
             mWifiBatchedScanTimer = new StopwatchTimer[NUM_WIFI_BATCHED_SCAN_BINS];
-            mWifiMulticastTimer = new StopwatchTimer(mBsi.mClocks, this, WIFI_MULTICAST_ENABLED,
-                    mBsi.mWifiMulticastTimers, mBsi.mOnBatteryTimeBase);
             mProcessStateTimer = new StopwatchTimer[NUM_PROCESS_STATE];
         }
 
@@ -5830,12 +5823,16 @@ public class BatteryStatsImpl extends BatteryStats {
         public void noteWifiRunningLocked(long elapsedRealtimeMs) {
             if (!mWifiRunning) {
                 mWifiRunning = true;
-                if (mWifiRunningTimer == null) {
-                    mWifiRunningTimer = new StopwatchTimer(mBsi.mClocks, Uid.this, WIFI_RUNNING,
-                            mBsi.mWifiRunningTimers, mBsi.mOnBatteryTimeBase);
-                }
-                mWifiRunningTimer.startRunningLocked(elapsedRealtimeMs);
+                createWifiRunningTimerLocked().startRunningLocked(elapsedRealtimeMs);
+            }
+        }
+
+        public StopwatchTimer createWifiRunningTimerLocked() {
+            if (mWifiRunningTimer == null) {
+                mWifiRunningTimer = new StopwatchTimer(mBsi.mClocks, Uid.this, WIFI_RUNNING,
+                        mBsi.mWifiRunningTimers, mBsi.mOnBatteryTimeBase);
             }
+            return mWifiRunningTimer;
         }
 
         @Override
@@ -5850,14 +5847,18 @@ public class BatteryStatsImpl extends BatteryStats {
         public void noteFullWifiLockAcquiredLocked(long elapsedRealtimeMs) {
             if (!mFullWifiLockOut) {
                 mFullWifiLockOut = true;
-                if (mFullWifiLockTimer == null) {
-                    mFullWifiLockTimer = new StopwatchTimer(mBsi.mClocks, Uid.this, FULL_WIFI_LOCK,
-                            mBsi.mFullWifiLockTimers, mBsi.mOnBatteryTimeBase);
-                }
-                mFullWifiLockTimer.startRunningLocked(elapsedRealtimeMs);
+                createFullWifiLockTimerLocked().startRunningLocked(elapsedRealtimeMs);
             }
         }
 
+        public StopwatchTimer createFullWifiLockTimerLocked() {
+            if (mFullWifiLockTimer == null) {
+                mFullWifiLockTimer = new StopwatchTimer(mBsi.mClocks, Uid.this, FULL_WIFI_LOCK,
+                        mBsi.mFullWifiLockTimers, mBsi.mOnBatteryTimeBase);
+            }
+            return mFullWifiLockTimer;
+        }
+
         @Override
         public void noteFullWifiLockReleasedLocked(long elapsedRealtimeMs) {
             if (mFullWifiLockOut) {
@@ -5870,13 +5871,17 @@ public class BatteryStatsImpl extends BatteryStats {
         public void noteWifiScanStartedLocked(long elapsedRealtimeMs) {
             if (!mWifiScanStarted) {
                 mWifiScanStarted = true;
-                if (mWifiScanTimer == null) {
-                    mWifiScanTimer = new DualTimer(mBsi.mClocks, Uid.this, WIFI_SCAN,
-                            mBsi.mWifiScanTimers, mBsi.mOnBatteryTimeBase,
-                            mOnBatteryBackgroundTimeBase);
-                }
-                mWifiScanTimer.startRunningLocked(elapsedRealtimeMs);
+                createWifiScanTimerLocked().startRunningLocked(elapsedRealtimeMs);
+            }
+        }
+
+        public DualTimer createWifiScanTimerLocked() {
+            if (mWifiScanTimer == null) {
+                mWifiScanTimer = new DualTimer(mBsi.mClocks, Uid.this, WIFI_SCAN,
+                        mBsi.mWifiScanTimers, mBsi.mOnBatteryTimeBase,
+                        mOnBatteryBackgroundTimeBase);
             }
+            return mWifiScanTimer;
         }
 
         @Override
@@ -5921,14 +5926,18 @@ public class BatteryStatsImpl extends BatteryStats {
         public void noteWifiMulticastEnabledLocked(long elapsedRealtimeMs) {
             if (!mWifiMulticastEnabled) {
                 mWifiMulticastEnabled = true;
-                if (mWifiMulticastTimer == null) {
-                    mWifiMulticastTimer = new StopwatchTimer(mBsi.mClocks, Uid.this,
-                            WIFI_MULTICAST_ENABLED, mBsi.mWifiMulticastTimers, mBsi.mOnBatteryTimeBase);
-                }
-                mWifiMulticastTimer.startRunningLocked(elapsedRealtimeMs);
+                createWifiMulticastTimerLocked().startRunningLocked(elapsedRealtimeMs);
             }
         }
 
+        public StopwatchTimer createWifiMulticastTimerLocked() {
+            if (mWifiMulticastTimer == null) {
+                mWifiMulticastTimer = new StopwatchTimer(mBsi.mClocks, Uid.this,
+                        WIFI_MULTICAST_ENABLED, mBsi.mWifiMulticastTimers, mBsi.mOnBatteryTimeBase);
+            }
+            return mWifiMulticastTimer;
+        }
+
         @Override
         public void noteWifiMulticastDisabledLocked(long elapsedRealtimeMs) {
             if (mWifiMulticastEnabled) {
@@ -9579,12 +9588,16 @@ public class BatteryStatsImpl extends BatteryStats {
                     final Uid uid = mUidStats.valueAt(i);
 
                     // Sum the total scan power for all apps.
-                    totalScanTimeMs += uid.mWifiScanTimer.getTimeSinceMarkLocked(
-                            elapsedRealtimeMs * 1000) / 1000;
+                    if (uid.mWifiScanTimer != null) {
+                        totalScanTimeMs += uid.mWifiScanTimer.getTimeSinceMarkLocked(
+                                elapsedRealtimeMs * 1000) / 1000;
+                    }
 
                     // Sum the total time holding wifi lock for all apps.
-                    totalWifiLockTimeMs += uid.mFullWifiLockTimer.getTimeSinceMarkLocked(
-                            elapsedRealtimeMs * 1000) / 1000;
+                    if (uid.mFullWifiLockTimer != null) {
+                        totalWifiLockTimeMs += uid.mFullWifiLockTimer.getTimeSinceMarkLocked(
+                                elapsedRealtimeMs * 1000) / 1000;
+                    }
                 }
 
                 if (DEBUG_ENERGY && totalScanTimeMs > rxTimeMs) {
@@ -9602,8 +9615,9 @@ public class BatteryStatsImpl extends BatteryStats {
                 for (int i = 0; i < uidStatsSize; i++) {
                     final Uid uid = mUidStats.valueAt(i);
 
-                    long scanTimeSinceMarkMs = uid.mWifiScanTimer.getTimeSinceMarkLocked(
-                            elapsedRealtimeMs * 1000) / 1000;
+                    long scanTimeSinceMarkMs = uid.mWifiScanTimer == null ? 0
+                            : uid.mWifiScanTimer.getTimeSinceMarkLocked(
+                                    elapsedRealtimeMs * 1000) / 1000;
                     if (scanTimeSinceMarkMs > 0) {
                         // Set the new mark so that next time we get new data since this point.
                         uid.mWifiScanTimer.setMark(elapsedRealtimeMs);
@@ -9644,8 +9658,8 @@ public class BatteryStatsImpl extends BatteryStats {
 
                     // Distribute evenly the power consumed while Idle to each app holding a WiFi
                     // lock.
-                    final long wifiLockTimeSinceMarkMs =
-                            uid.mFullWifiLockTimer.getTimeSinceMarkLocked(
+                    final long wifiLockTimeSinceMarkMs = uid.mFullWifiLockTimer == null ? 0
+                            : uid.mFullWifiLockTimer.getTimeSinceMarkLocked(
                                     elapsedRealtimeMs * 1000) / 1000;
                     if (wifiLockTimeSinceMarkMs > 0) {
                         // Set the new mark so that next time we get new data since this point.
@@ -11066,6 +11080,17 @@ public class BatteryStatsImpl extends BatteryStats {
     Parcel mPendingWrite = null;
     final ReentrantLock mWriteLock = new ReentrantLock();
 
+    // Statistics about persisting batterystats.bin, for dumpsys.  The coalesced
+    // write count is updated while holding "this"; the file write counters only
+    // while holding mWriteLock (never "this", which the sync write path takes
+    // before mWriteLock).  All are volatile so dumpsys can read them without
+    // taking mWriteLock, and may see slightly stale values.
+    volatile int mNumCoalescedFileWrites;
+    volatile int mNumFileWrites;
+    volatile int mLastFileWriteBytes;
+    volatile long mLastFileWriteDurationMs;
+    volatile long mTotalFileWriteDurationMs;
+
     public void writeAsyncLocked() {
         writeLocked(false);
     }
@@ -11088,14 +11113,17 @@ public class BatteryStatsImpl extends BatteryStats {
         writeSummaryToParcel(out, true);
         mLastWriteTime = mClocks.elapsedRealtime();
 
-        if (mPendingWrite != null) {
+        final boolean commitQueued = mPendingWrite != null;
+        if (commitQueued) {
+            // The commit that is already queued will pick up this newer snapshot instead.
             mPendingWrite.recycle();
+            mNumCoalescedFileWrites++;
         }
         mPendingWrite = out;
 
         if (sync) {
             commitPendingDataToDisk();
-        } else {
+        } else if (!commitQueued) {
             BackgroundThread.getHandler().post(new Runnable() {
                 @Override public void run() {
                     commitPendingDataToDisk();
@@ -11116,12 +11144,19 @@ public class BatteryStatsImpl extends BatteryStats {
 
         mWriteLock.lock();
         try {
+            final long startTime = SystemClock.uptimeMillis();
+            final byte[] data = next.marshall();
             FileOutputStream stream = new FileOutputStream(mFile.chooseForWrite());
-            stream.write(next.marshall());
+            stream.write(data);
             stream.flush();
             FileUtils.sync(stream);
             stream.close();
             mFile.commit();
+            final long duration = SystemClock.uptimeMillis() - startTime;
+            mNumFileWrites++;
+            mLastFileWriteBytes = data.length;
+            mLastFileWriteDurationMs = duration;
+            mTotalFileWriteDurationMs += duration;
         } catch (IOException e) {
             Slog.w("BatteryStats", "Error writing battery statistics", e);
             mFile.rollback();
@@ -11476,15 +11511,15 @@ public class BatteryStatsImpl extends BatteryStats {
 
             u.mWifiRunning = false;
             if (in.readInt() != 0) {
-                u.mWifiRunningTimer.readSummaryFromParcelLocked(in);
+                u.createWifiRunningTimerLocked().readSummaryFromParcelLocked(in);
             }
             u.mFullWifiLockOut = false;
             if (in.readInt() != 0) {
-                u.mFullWifiLockTimer.readSummaryFromParcelLocked(in);
+                u.createFullWifiLockTimerLocked().readSummaryFromParcelLocked(in);
             }
             u.mWifiScanStarted = false;
             if (in.readInt() != 0) {
-                u.mWifiScanTimer.readSummaryFromParcelLocked(in);
+                u.createWifiScanTimerLocked().readSummaryFromParcelLocked(in);
             }
             u.mWifiBatchedScanBinStarted = Uid.NO_BATCHED_SCAN_STARTED;
             for (int i = 0; i < Uid.NUM_WIFI_BATCHED_SCAN_BINS; i++) {
@@ -11495,7 +11530,7 @@ public class BatteryStatsImpl extends BatteryStats {
             }
             u.mWifiMulticastEnabled = false;
             if (in.readInt() != 0) {
-                u.mWifiMulticastTimer.readSummaryFromParcelLocked(in);
+                u.createWifiMulticastTimerLocked().readSummaryFromParcelLocked(in);
             }
             if (in.readInt() != 0) {
                 u.createAudioTurnedOnTimerLocked().readSummaryFromParcelLocked(in);
@@ -12569,5 +12604,14 @@ public class BatteryStatsImpl extends BatteryStats {
             mCameraOnTimer.logState(pr, "  ");
         }
         super.dumpLocked(context, pw, flags, reqUid, histStart);
+        if (mFile != null) {
+            pw.println();
+            pw.print("Stats file writes: "); pw.print(mNumFileWrites);
+            pw.print(" coalesced="); pw.print(mNumCoalescedFileWrites);
+            pw.print(" last="); pw.print(mLastFileWriteBytes);
+            pw.print("b/"); pw.print(mLastFileWriteDurationMs);
+            pw.print("ms total="); pw.print(mTotalFileWriteDurationMs);
+            pw.println("ms");
+        }
     }
 }
@@ -19,6 +19,7 @@ import android.annotation.IntRange;
 import android.annotation.NonNull;
 import android.annotation.Nullable;
 import android.util.Log;
+import android.util.Printer;
 
 import java.util.Arrays;
 
@@ -71,6 +72,20 @@ public class ExponentiallyBucketedHistogram {
      * @param prefix A custom prefix that is printed in front of the histogram
      */
     public void log(@NonNull String tag, @Nullable CharSequence prefix) {
+        Log.d(tag, format(prefix));
+    }
+
+    /**
+     * Print the histogram on a single line.
+     *
+     * @param pw     The printer to print to
+     * @param prefix A custom prefix that is printed in front of the histogram
+     */
+    public void dump(@NonNull Printer pw, @Nullable CharSequence prefix) {
+        pw.println(format(prefix));
+    }
+
+    private String format(@Nullable CharSequence prefix) {
         StringBuilder builder = new StringBuilder(prefix);
         builder.append('[');
 
@@ -92,6 +107,6 @@ public class ExponentiallyBucketedHistogram {
         }
         builder.append("]");
 
-        Log.d(tag, builder.toString());
+        return builder.toString();
     }
 }
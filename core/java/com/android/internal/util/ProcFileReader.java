@@ -35,6 +35,8 @@ public class ProcFileReader implements Closeable {
     private final InputStream mStream;
     private final byte[] mBuffer;
 
+    /** Read pointer in {@link #mBuffer}. */
+    private int mHead;
     /** Write pointer in {@link #mBuffer}. */
     private int mTail;
     /** Flag when last read token finished current line. */
@@ -53,9 +55,16 @@ public class ProcFileReader implements Closeable {
     }
 
     /**
-     * Read more data from {@link #mStream} into internal buffer.
+     * Read more data from {@link #mStream} into internal buffer, first moving
+     * any unconsumed bytes to the beginning of the buffer.
      */
     private int fillBuf() throws IOException {
+        if (mHead > 0) {
+            System.arraycopy(mBuffer, mHead, mBuffer, 0, mTail - mHead);
+            mTail -= mHead;
+            mHead = 0;
+        }
+
         final int length = mBuffer.length - mTail;
         if (length == 0) {
             throw new IOException("attempting to fill already-full buffer");
@@ -73,11 +82,12 @@ public class ProcFileReader implements Closeable {
      * all remaining bytes, will attempt to {@link #fillBuf()}.
      */
     private void consumeBuf(int count) throws IOException {
-        // TODO: consider moving to read pointer, but for now traceview says
-        // these copies aren't a bottleneck.
-        System.arraycopy(mBuffer, count, mBuffer, 0, mTail - count);
-        mTail -= count;
-        if (mTail == 0) {
+        // Only advance the read pointer; remaining bytes are moved once per
+        // fillBuf() instead of after every token.
+        mHead += count;
+        if (mHead == mTail) {
+            mHead = 0;
+            mTail = 0;
             fillBuf();
         }
     }
@@ -86,8 +96,8 @@ public class ProcFileReader implements Closeable {
      * Find buffer index of next token delimiter, usually space or newline.
      * Fills buffer as needed.
      *
-     * @return Index of next delimeter, otherwise -1 if no tokens remain on
-     *         current line.
+     * @return Index of next delimeter relative to the read pointer, otherwise
+     *         -1 if no tokens remain on current line.
      */
     private int nextTokenIndex() throws IOException {
         if (mLineFinished) {
@@ -97,8 +107,8 @@ public class ProcFileReader implements Closeable {
         int i = 0;
         do {
             // scan forward for token boundary
-            for (; i < mTail; i++) {
-                final byte b = mBuffer[i];
+            for (; i < mTail - mHead; i++) {
+                final byte b = mBuffer[mHead + i];
                 if (b == '\n') {
                     mLineFinished = true;
                     return i;
@@ -116,7 +126,7 @@ public class ProcFileReader implements Closeable {
      * Check if stream has more data to be parsed.
      */
     public boolean hasMoreData() {
-        return mTail > 0;
+        return mTail - mHead > 0;
     }
 
     /**
@@ -132,8 +142,8 @@ public class ProcFileReader implements Closeable {
         int i = 0;
         do {
             // scan forward for line boundary and consume
-            for (; i < mTail; i++) {
-                if (mBuffer[i] == '\n') {
+            for (; i < mTail - mHead; i++) {
+                if (mBuffer[mHead + i] == '\n') {
                     consumeBuf(i + 1);
                     return;
                 }
@@ -181,18 +191,18 @@ public class ProcFileReader implements Closeable {
     }
 
     private String parseAndConsumeString(int tokenIndex) throws IOException {
-        final String s = new String(mBuffer, 0, tokenIndex, StandardCharsets.US_ASCII);
+        final String s = new String(mBuffer, mHead, tokenIndex, StandardCharsets.US_ASCII);
         consumeBuf(tokenIndex + 1);
         return s;
     }
 
     private long parseAndConsumeLong(int tokenIndex) throws IOException {
-        final boolean negative = mBuffer[0] == '-';
+        final boolean negative = mBuffer[mHead] == '-';
 
         // TODO: refactor into something like IntegralToString
         long result = 0;
         for (int i = negative ? 1 : 0; i < tokenIndex; i++) {
-            final int digit = mBuffer[i] - '0';
+            final int digit = mBuffer[mHead + i] - '0';
             if (digit < 0 || digit > 9) {
                 throw invalidLong(tokenIndex);
             }
@@ -211,8 +221,8 @@ public class ProcFileReader implements Closeable {
     }
 
     private NumberFormatException invalidLong(int tokenIndex) {
-        return new NumberFormatException(
-                "invalid long: " + new String(mBuffer, 0, tokenIndex, StandardCharsets.US_ASCII));
+        return new NumberFormatException("invalid long: "
+                + new String(mBuffer, mHead, tokenIndex, StandardCharsets.US_ASCII));
     }
 
     /**
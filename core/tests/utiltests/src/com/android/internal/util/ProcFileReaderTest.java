@@ -166,6 +166,26 @@ public class ProcFileReaderTest extends AndroidTestCase {
         assertEquals(-1L, reader.nextOptionalLong(-1L));
     }
 
+    public void testTokensSpanningRefills() throws Exception {
+        final ProcFileReader reader = buildReader("lo 12 345\nwlan0 6789 1\neth1 2 34567\n", 12);
+
+        assertEquals("lo", reader.nextString());
+        assertEquals(12L, reader.nextLong());
+        assertEquals(345L, reader.nextLong());
+        reader.finishLine();
+
+        assertEquals("wlan0", reader.nextString());
+        assertEquals(6789L, reader.nextLong());
+        reader.finishLine();
+
+        assertEquals("eth1", reader.nextString());
+        assertEquals(2L, reader.nextLong());
+        assertEquals(34567L, reader.nextLong());
+        reader.finishLine();
+
+        assertFalse(reader.hasMoreData());
+    }
+
     private static ProcFileReader buildReader(String string) throws IOException {
         return buildReader(string, 2048);
     }
@@ -46,6 +46,7 @@ import android.util.Xml;
 import android.util.proto.ProtoOutputStream;
 
 import com.android.internal.annotations.GuardedBy;
+import com.android.internal.util.FastXmlSerializer;
 import com.android.server.LocalServices;
 
 import libcore.io.IoUtils;
@@ -584,13 +585,16 @@ final class SettingsState {
             if (DEBUG_PERSISTENCE) {
                 Slog.i(LOG_TAG, "[PERSIST START]");
             }
+            final long startTimeMillis = SystemClock.uptimeMillis();
 
             AtomicFile destination = new AtomicFile(mStatePersistFile);
             FileOutputStream out = null;
             try {
                 out = destination.startWrite();
 
-                XmlSerializer serializer = Xml.newSerializer();
+                // The whole table is rewritten on every persist, so use the buffered
+                // serializer the system server uses for its own large state files.
+                XmlSerializer serializer = new FastXmlSerializer();
                 serializer.setOutput(out, StandardCharsets.UTF_8.name());
                 serializer.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output",
                         true);
@@ -602,7 +606,7 @@ final class SettingsState {
                 for (int i = 0; i < settingCount; i++) {
                     Setting setting = settings.valueAt(i);
 
-                    writeSingleSetting(mVersion, serializer, setting.getId(), setting.getName(),
+                    writeSingleSetting(version, serializer, setting.getId(), setting.getName(),
                             setting.getValue(), setting.getDefaultValue(), setting.getPackageName(),
                             setting.getTag(), setting.isDefaultFromSystem());
 
@@ -619,7 +623,8 @@ final class SettingsState {
                 wroteState = true;
 
                 if (DEBUG_PERSISTENCE) {
-                    Slog.i(LOG_TAG, "[PERSIST END]");
+                    Slog.i(LOG_TAG, "[PERSIST END] " + settingCount + " settings in "
+                            + (SystemClock.uptimeMillis() - startTimeMillis) + "ms");
                 }
             } catch (Throwable t) {
                 Slog.wtf(LOG_TAG, "Failed to write settings, restoring backup", t);
@@ -686,6 +686,8 @@ class AlarmManagerService extends SystemService {
     static final long MIN_FUZZABLE_INTERVAL = 10000;
     static final BatchTimeOrder sBatchOrder = new BatchTimeOrder();
     final ArrayList<Batch> mAlarmBatches = new ArrayList<>();
+    // Scratch list of batches whose bounds changed during a removal
+    private final ArrayList<Batch> mTmpChangedBatches = new ArrayList<>();
 
     // set to null if in idle mode; while in this mode, any alarms we don't want
     // to run during this time are placed in mPendingWhileIdleAlarms
@@ -734,7 +736,9 @@ class AlarmManagerService extends SystemService {
 
     // Return the index of the matching batch, or -1 if none found.
     int attemptCoalesceLocked(long whenElapsed, long maxWhen) {
-        final int N = mAlarmBatches.size();
+        // Batches are ordered by start time, so only those starting no later than
+        // maxWhen can possibly hold the alarm.
+        final int N = firstBatchStartingAfterLocked(maxWhen);
         for (int i = 0; i < N; i++) {
             Batch b = mAlarmBatches.get(i);
             if ((b.flags&AlarmManager.FLAG_STANDALONE) == 0 && b.canHold(whenElapsed, maxWhen)) {
@@ -744,6 +748,22 @@ class AlarmManagerService extends SystemService {
         return -1;
     }
 
+    // Return the index of the first batch whose start is after the given time, or the
+    // number of batches if there is none.
+    private int firstBatchStartingAfterLocked(long whenElapsed) {
+        int lo = 0;
+        int hi = mAlarmBatches.size();
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (mAlarmBatches.get(mid).start <= whenElapsed) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
     // The RTC clock has moved arbitrarily, so we need to recalculate all the batching
     void rebatchAllAlarms() {
         synchronized (mLock) {
@@ -776,6 +796,21 @@ class AlarmManagerService extends SystemService {
         updateNextAlarmClockLocked();
     }
 
+    // Re-add just the alarms of the given batches, which must no longer be in
+    // mAlarmBatches.
+    void rebatchAlarmsLocked(ArrayList<Batch> batches, boolean doValidate) {
+        final long nowElapsed = SystemClock.elapsedRealtime();
+        final int numBatches = batches.size();
+        for (int batchNum = 0; batchNum < numBatches; batchNum++) {
+            Batch batch = batches.get(batchNum);
+            final int N = batch.size();
+            for (int i = 0; i < N; i++) {
+                reAddAlarmLocked(batch.get(i), nowElapsed, doValidate);
+            }
+        }
+        rescheduleKernelAlarmsLocked();
+    }
+
     void reAddAlarmLocked(Alarm a, long nowElapsed, boolean doValidate) {
         a.when = a.origWhen;
         long whenElapsed = convertToElapsed(a.when, a.type);
@@ -1921,10 +1956,18 @@ class AlarmManagerService extends SystemService {
 
     private void removeLocked(PendingIntent operation, IAlarmListener directReceiver) {
         boolean didRemove = false;
+        final ArrayList<Batch> changedBatches = mTmpChangedBatches;
         for (int i = mAlarmBatches.size() - 1; i >= 0; i--) {
             Batch b = mAlarmBatches.get(i);
-            didRemove |= b.remove(operation, directReceiver);
-            if (b.size() == 0) {
+            if (b.remove(operation, directReceiver)) {
+                didRemove = true;
+                // The batch bounds have changed; take it out so its remaining
+                // alarms can be batched again.
+                mAlarmBatches.remove(i);
+                if (b.size() > 0) {
+                    changedBatches.add(b);
+                }
+            } else if (b.size() == 0) {
                 mAlarmBatches.remove(i);
             }
         }
@@ -1940,19 +1983,34 @@ class AlarmManagerService extends SystemService {
                 Slog.v(TAG, "remove(operation) changed bounds; rebatching");
             }
             boolean restorePending = false;
+            boolean idleStateChanged = false;
             if (mPendingIdleUntil != null && mPendingIdleUntil.matches(operation, directReceiver)) {
                 mPendingIdleUntil = null;
                 restorePending = true;
+                idleStateChanged = true;
             }
             if (mNextWakeFromIdle != null && mNextWakeFromIdle.matches(operation, directReceiver)) {
                 mNextWakeFromIdle = null;
+                idleStateChanged = true;
+            }
+            if (idleStateChanged) {
+                // Put the changed batches back so that everything gets rebatched
+                // against the new idle state.
+                for (int i = changedBatches.size() - 1; i >= 0; i--) {
+                    addBatchLocked(mAlarmBatches, changedBatches.get(i));
+                }
+                rebatchAllAlarmsLocked(true);
+            } else {
+                // Nothing else moved, so only the alarms that shared a batch with
+                // the removed ones need to find a new home.
+                rebatchAlarmsLocked(changedBatches, true);
             }
-            rebatchAllAlarmsLocked(true);
             if (restorePending) {
                 restorePendingWhileIdleAlarmsLocked();
             }
             updateNextAlarmClockLocked();
         }
+        changedBatches.clear();
     }
 
     void removeLocked(String packageName) {
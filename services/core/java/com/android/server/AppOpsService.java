@@ -1088,54 +1088,70 @@ public class AppOpsService extends IAppOpsService.Stub {
     private int noteOperationUnchecked(int code, int uid, String packageName,
             int proxyUid, String proxyPackageName) {
         synchronized (this) {
-            Ops ops = getOpsRawLocked(uid, packageName, true);
+            final Ops ops = getOpsRawLocked(uid, packageName, false);
+            if (ops != null) {
+                return noteOperationLocked(ops, code, uid, packageName, proxyUid,
+                        proxyPackageName);
+            }
+        }
+        // First time we see this package, validate it without holding the lock so
+        // that other callers don't wait on the package manager.  Root is never checked.
+        final PackageVerification verification = uid != 0
+                ? verifyPackage(uid, packageName) : null;
+        synchronized (this) {
+            final Ops ops = getOpsRawLocked(uid, packageName, true, verification);
             if (ops == null) {
                 if (DEBUG) Log.d(TAG, "noteOperation: no op for code " + code + " uid " + uid
                         + " package " + packageName);
                 return AppOpsManager.MODE_ERRORED;
             }
-            Op op = getOpLocked(ops, code, true);
-            if (isOpRestrictedLocked(uid, code, packageName)) {
+            return noteOperationLocked(ops, code, uid, packageName, proxyUid, proxyPackageName);
+        }
+    }
+
+    private int noteOperationLocked(Ops ops, int code, int uid, String packageName,
+            int proxyUid, String proxyPackageName) {
+        Op op = getOpLocked(ops, code, true);
+        if (isOpRestrictedLocked(uid, code, packageName)) {
+            op.ignoredCount++;
+            return AppOpsManager.MODE_IGNORED;
+        }
+        if (op.duration == -1) {
+            Slog.w(TAG, "Noting op not finished: uid " + uid + " pkg " + packageName
+                    + " code " + code + " time=" + op.time + " duration=" + op.duration);
+        }
+        op.duration = 0;
+        final int switchCode = AppOpsManager.opToSwitch(code);
+        UidState uidState = ops.uidState;
+        // If there is a non-default per UID policy (we set UID op mode only if
+        // non-default) it takes over, otherwise use the per package policy.
+        if (uidState.opModes != null && uidState.opModes.indexOfKey(switchCode) >= 0) {
+            final int uidMode = uidState.opModes.get(switchCode);
+            if (uidMode != AppOpsManager.MODE_ALLOWED) {
+                if (DEBUG) Log.d(TAG, "noteOperation: reject #" + op.mode + " for code "
+                        + switchCode + " (" + code + ") uid " + uid + " package "
+                        + packageName);
+                op.rejectTime = System.currentTimeMillis();
+                return uidMode;
+            }
+        } else {
+            final Op switchOp = switchCode != code ? getOpLocked(ops, switchCode, true) : op;
+            if (switchOp.mode != AppOpsManager.MODE_ALLOWED) {
+                if (DEBUG) Log.d(TAG, "noteOperation: reject #" + op.mode + " for code "
+                        + switchCode + " (" + code + ") uid " + uid + " package "
+                        + packageName);
+                op.rejectTime = System.currentTimeMillis();
                 op.ignoredCount++;
-                return AppOpsManager.MODE_IGNORED;
+                return switchOp.mode;
             }
-            if (op.duration == -1) {
-                Slog.w(TAG, "Noting op not finished: uid " + uid + " pkg " + packageName
-                        + " code " + code + " time=" + op.time + " duration=" + op.duration);
-            }
-            op.duration = 0;
-            final int switchCode = AppOpsManager.opToSwitch(code);
-            UidState uidState = ops.uidState;
-            // If there is a non-default per UID policy (we set UID op mode only if
-            // non-default) it takes over, otherwise use the per package policy.
-            if (uidState.opModes != null && uidState.opModes.indexOfKey(switchCode) >= 0) {
-                final int uidMode = uidState.opModes.get(switchCode);
-                if (uidMode != AppOpsManager.MODE_ALLOWED) {
-                    if (DEBUG) Log.d(TAG, "noteOperation: reject #" + op.mode + " for code "
-                            + switchCode + " (" + code + ") uid " + uid + " package "
-                            + packageName);
-                    op.rejectTime = System.currentTimeMillis();
-                    return uidMode;
-                }
-            } else {
-                final Op switchOp = switchCode != code ? getOpLocked(ops, switchCode, true) : op;
-                if (switchOp.mode != AppOpsManager.MODE_ALLOWED) {
-                    if (DEBUG) Log.d(TAG, "noteOperation: reject #" + op.mode + " for code "
-                            + switchCode + " (" + code + ") uid " + uid + " package "
-                            + packageName);
-                    op.rejectTime = System.currentTimeMillis();
-                    op.ignoredCount++;
-                    return switchOp.mode;
-                }
-            }
-            if (DEBUG) Log.d(TAG, "noteOperation: allowing code " + code + " uid " + uid
-                    + " package " + packageName);
-            op.time = System.currentTimeMillis();
-            op.rejectTime = 0;
-            op.proxyUid = proxyUid;
-            op.proxyPackageName = proxyPackageName;
-            return AppOpsManager.MODE_ALLOWED;
         }
+        if (DEBUG) Log.d(TAG, "noteOperation: allowing code " + code + " uid " + uid
+                + " package " + packageName);
+        op.time = System.currentTimeMillis();
+        op.rejectTime = 0;
+        op.proxyUid = proxyUid;
+        op.proxyPackageName = proxyPackageName;
+        return AppOpsManager.MODE_ALLOWED;
     }
 
     @Override
@@ -1148,51 +1164,66 @@ public class AppOpsService extends IAppOpsService.Stub {
         }
         ClientState client = (ClientState)token;
         synchronized (this) {
-            Ops ops = getOpsRawLocked(uid, resolvedPackageName, true);
+            final Ops ops = getOpsRawLocked(uid, resolvedPackageName, false);
+            if (ops != null) {
+                return startOperationLocked(client, ops, code, uid, resolvedPackageName);
+            }
+        }
+        // First time we see this package, validate it without holding the lock so
+        // that other callers don't wait on the package manager.  Root is never checked.
+        final PackageVerification verification = uid != 0
+                ? verifyPackage(uid, resolvedPackageName) : null;
+        synchronized (this) {
+            final Ops ops = getOpsRawLocked(uid, resolvedPackageName, true, verification);
             if (ops == null) {
                 if (DEBUG) Log.d(TAG, "startOperation: no op for code " + code + " uid " + uid
                         + " package " + resolvedPackageName);
                 return AppOpsManager.MODE_ERRORED;
             }
-            Op op = getOpLocked(ops, code, true);
-            if (isOpRestrictedLocked(uid, code, resolvedPackageName)) {
-                op.ignoredCount++;
-                return AppOpsManager.MODE_IGNORED;
-            }
-            final int switchCode = AppOpsManager.opToSwitch(code);
-            UidState uidState = ops.uidState;
-            if (uidState.opModes != null) {
-                final int uidMode = uidState.opModes.get(switchCode);
-                if (uidMode != AppOpsManager.MODE_ALLOWED) {
-                    if (DEBUG) Log.d(TAG, "noteOperation: reject #" + op.mode + " for code "
-                            + switchCode + " (" + code + ") uid " + uid + " package "
-                            + resolvedPackageName);
-                    op.rejectTime = System.currentTimeMillis();
-                    return uidMode;
-                }
-            }
-            final Op switchOp = switchCode != code ? getOpLocked(ops, switchCode, true) : op;
-            if (switchOp.mode != AppOpsManager.MODE_ALLOWED) {
-                if (DEBUG) Log.d(TAG, "startOperation: reject #" + op.mode + " for code "
+            return startOperationLocked(client, ops, code, uid, resolvedPackageName);
+        }
+    }
+
+    private int startOperationLocked(ClientState client, Ops ops, int code, int uid,
+            String resolvedPackageName) {
+        Op op = getOpLocked(ops, code, true);
+        if (isOpRestrictedLocked(uid, code, resolvedPackageName)) {
+            op.ignoredCount++;
+            return AppOpsManager.MODE_IGNORED;
+        }
+        final int switchCode = AppOpsManager.opToSwitch(code);
+        UidState uidState = ops.uidState;
+        if (uidState.opModes != null) {
+            final int uidMode = uidState.opModes.get(switchCode);
+            if (uidMode != AppOpsManager.MODE_ALLOWED) {
+                if (DEBUG) Log.d(TAG, "noteOperation: reject #" + op.mode + " for code "
                         + switchCode + " (" + code + ") uid " + uid + " package "
                         + resolvedPackageName);
                 op.rejectTime = System.currentTimeMillis();
-                op.ignoredCount++;
-                return switchOp.mode;
-            }
-            if (DEBUG) Log.d(TAG, "startOperation: allowing code " + code + " uid " + uid
-                    + " package " + resolvedPackageName);
-            if (op.nesting == 0) {
-                op.time = System.currentTimeMillis();
-                op.rejectTime = 0;
-                op.duration = -1;
+                return uidMode;
             }
-            op.nesting++;
-            if (client.mStartedOps != null) {
-                client.mStartedOps.add(op);
-            }
-            return AppOpsManager.MODE_ALLOWED;
         }
+        final Op switchOp = switchCode != code ? getOpLocked(ops, switchCode, true) : op;
+        if (switchOp.mode != AppOpsManager.MODE_ALLOWED) {
+            if (DEBUG) Log.d(TAG, "startOperation: reject #" + op.mode + " for code "
+                    + switchCode + " (" + code + ") uid " + uid + " package "
+                    + resolvedPackageName);
+            op.rejectTime = System.currentTimeMillis();
+            op.ignoredCount++;
+            return switchOp.mode;
+        }
+        if (DEBUG) Log.d(TAG, "startOperation: allowing code " + code + " uid " + uid
+                + " package " + resolvedPackageName);
+        if (op.nesting == 0) {
+            op.time = System.currentTimeMillis();
+            op.rejectTime = 0;
+            op.duration = -1;
+        }
+        op.nesting++;
+        if (client.mStartedOps != null) {
+            client.mStartedOps.add(op);
+        }
+        return AppOpsManager.MODE_ALLOWED;
     }
 
     @Override
@@ -1277,6 +1308,15 @@ public class AppOpsService extends IAppOpsService.Stub {
     }
 
     private Ops getOpsRawLocked(int uid, String packageName, boolean edit) {
+        return getOpsRawLocked(uid, packageName, edit, null);
+    }
+
+    /**
+     * @param verification result of {@link #verifyPackage} for this package if the caller
+     *        already obtained one, or null to query the package manager if needed.
+     */
+    private Ops getOpsRawLocked(int uid, String packageName, boolean edit,
+            PackageVerification verification) {
         UidState uidState = getUidStateLocked(uid, edit);
         if (uidState == null) {
             return null;
@@ -1298,47 +1338,22 @@ public class AppOpsService extends IAppOpsService.Stub {
             // This is the first time we have seen this package name under this uid,
             // so let's make sure it is valid.
             if (uid != 0) {
-                final long ident = Binder.clearCallingIdentity();
-                try {
-                    int pkgUid = -1;
-                    try {
-                        ApplicationInfo appInfo = ActivityThread.getPackageManager()
-                                .getApplicationInfo(packageName,
-                                        PackageManager.MATCH_DEBUG_TRIAGED_MISSING,
-                                        UserHandle.getUserId(uid));
-                        if (appInfo != null) {
-                            pkgUid = appInfo.uid;
-                            isPrivileged = (appInfo.privateFlags
-                                    & ApplicationInfo.PRIVATE_FLAG_PRIVILEGED) != 0;
-                        } else {
-                            if ("media".equals(packageName)) {
-                                pkgUid = Process.MEDIA_UID;
-                                isPrivileged = false;
-                            } else if ("audioserver".equals(packageName)) {
-                                pkgUid = Process.AUDIOSERVER_UID;
-                                isPrivileged = false;
-                            } else if ("cameraserver".equals(packageName)) {
-                                pkgUid = Process.CAMERASERVER_UID;
-                                isPrivileged = false;
-                            }
-                        }
-                    } catch (RemoteException e) {
-                        Slog.w(TAG, "Could not contact PackageManager", e);
-                    }
-                    if (pkgUid != uid) {
-                        // Oops!  The package name is not valid for the uid they are calling
-                        // under.  Abort.
-                        if (!"com.google.android.gms".equals(packageName)) {
-                            // Google GMS is our overlord. Don't spam the log
-                            RuntimeException ex = new RuntimeException("Package uid doesn't match or it is not valid");
-                            ex.fillInStackTrace();
-                            Slog.w(TAG, "Bad call: specified package " + packageName
-                                    + " under uid " + uid + " but it is really " + pkgUid, ex);
-                        }
-                        return null;
+                if (verification == null) {
+                    verification = verifyPackage(uid, packageName);
+                }
+                final int pkgUid = verification.pkgUid;
+                isPrivileged = verification.isPrivileged;
+                if (pkgUid != uid) {
+                    // Oops!  The package name is not valid for the uid they are calling
+                    // under.  Abort.
+                    if (!"com.google.android.gms".equals(packageName)) {
+                        // Google GMS is our overlord. Don't spam the log
+                        RuntimeException ex = new RuntimeException("Package uid doesn't match or it is not valid");
+                        ex.fillInStackTrace();
+                        Slog.w(TAG, "Bad call: specified package " + packageName
+                                + " under uid " + uid + " but it is really " + pkgUid, ex);
                     }
-                } finally {
-                    Binder.restoreCallingIdentity(ident);
+                    return null;
                 }
             }
             ops = new Ops(packageName, uidState, isPrivileged);
@@ -1347,6 +1362,53 @@ public class AppOpsService extends IAppOpsService.Stub {
         return ops;
     }
 
+    /**
+     * Package manager state of a package that is being noted for the first time.
+     */
+    private static final class PackageVerification {
+        final int pkgUid;
+        final boolean isPrivileged;
+
+        PackageVerification(int pkgUid, boolean isPrivileged) {
+            this.pkgUid = pkgUid;
+            this.isPrivileged = isPrivileged;
+        }
+    }
+
+    /**
+     * Looks up the uid and privileged state of a package. This makes a call into the
+     * package manager, so avoid calling it with the lock held.
+     */
+    private PackageVerification verifyPackage(int uid, String packageName) {
+        int pkgUid = -1;
+        boolean isPrivileged = false;
+        final long ident = Binder.clearCallingIdentity();
+        try {
+            ApplicationInfo appInfo = ActivityThread.getPackageManager()
+                    .getApplicationInfo(packageName,
+                            PackageManager.MATCH_DEBUG_TRIAGED_MISSING,
+                            UserHandle.getUserId(uid));
+            if (appInfo != null) {
+                pkgUid = appInfo.uid;
+                isPrivileged = (appInfo.privateFlags
+                        & ApplicationInfo.PRIVATE_FLAG_PRIVILEGED) != 0;
+            } else {
+                if ("media".equals(packageName)) {
+                    pkgUid = Process.MEDIA_UID;
+                } else if ("audioserver".equals(packageName)) {
+                    pkgUid = Process.AUDIOSERVER_UID;
+                } else if ("cameraserver".equals(packageName)) {
+                    pkgUid = Process.CAMERASERVER_UID;
+                }
+            }
+        } catch (RemoteException e) {
+            Slog.w(TAG, "Could not contact PackageManager", e);
+        } finally {
+            Binder.restoreCallingIdentity(ident);
+        }
+        return new PackageVerification(pkgUid, isPrivileged);
+    }
+
     private void scheduleWriteLocked() {
         if (!mWriteScheduled) {
             mWriteScheduled = true;
@@ -1620,6 +1682,17 @@ public class AppOpsService extends IAppOpsService.Stub {
         synchronized (mFile) {
             List<AppOpsManager.PackageOps> allOps = getPackagesForOps(null);
 
+            // Snapshot the per-uid modes so they can be serialized without holding the lock.
+            final SparseArray<SparseIntArray> uidOpModes = new SparseArray<>();
+            synchronized (this) {
+                for (int i = 0; i < mUidStates.size(); i++) {
+                    final UidState uidState = mUidStates.valueAt(i);
+                    if (uidState.opModes != null && uidState.opModes.size() > 0) {
+                        uidOpModes.put(uidState.uid, uidState.opModes.clone());
+                    }
+                }
+            }
+
             FileOutputStream stream;
             try {
                 stream = mFile.startWrite();
@@ -1634,24 +1707,21 @@ public class AppOpsService extends IAppOpsService.Stub {
                 out.startDocument(null, true);
                 out.startTag(null, "app-ops");
 
-                final int uidStateCount = mUidStates.size();
+                final int uidStateCount = uidOpModes.size();
                 for (int i = 0; i < uidStateCount; i++) {
-                    UidState uidState = mUidStates.valueAt(i);
-                    if (uidState.opModes != null && uidState.opModes.size() > 0) {
-                        out.startTag(null, "uid");
-                        out.attribute(null, "n", Integer.toString(uidState.uid));
-                        SparseIntArray uidOpModes = uidState.opModes;
-                        final int opCount = uidOpModes.size();
-                        for (int j = 0; j < opCount; j++) {
-                            final int op = uidOpModes.keyAt(j);
-                            final int mode = uidOpModes.valueAt(j);
-                            out.startTag(null, "op");
-                            out.attribute(null, "n", Integer.toString(op));
-                            out.attribute(null, "m", Integer.toString(mode));
-                            out.endTag(null, "op");
-                        }
-                        out.endTag(null, "uid");
+                    out.startTag(null, "uid");
+                    out.attribute(null, "n", Integer.toString(uidOpModes.keyAt(i)));
+                    final SparseIntArray opModes = uidOpModes.valueAt(i);
+                    final int opCount = opModes.size();
+                    for (int j = 0; j < opCount; j++) {
+                        final int op = opModes.keyAt(j);
+                        final int mode = opModes.valueAt(j);
+                        out.startTag(null, "op");
+                        out.attribute(null, "n", Integer.toString(op));
+                        out.attribute(null, "m", Integer.toString(mode));
+                        out.endTag(null, "op");
                     }
+                    out.endTag(null, "uid");
                 }
 
                 if (allOps != null) {
@@ -94,8 +94,17 @@ public final class DropBoxManagerService extends SystemService {
     private StatFs mStatFs = null;
     private int mBlockSize = 0;
     private int mCachedQuotaBlocks = 0;  // Space we can use: computed from free space, etc.
+    private int mCachedAgeSeconds = DEFAULT_AGE_SECONDS;
+    private int mCachedMaxFiles = DEFAULT_MAX_FILES;
     private long mCachedQuotaUptimeMillis = 0;
 
+    // Ingest statistics, reported by dump().
+    private int mNumAdds = 0;
+    private int mNumDropped = 0;
+    private long mTotalBytesWritten = 0;
+    private long mTotalAddDurationMs = 0;
+    private long mMaxAddDurationMs = 0;
+
     private volatile boolean mBooted = false;
 
     // Provide a way to perform sendBroadcast asynchronously to avoid deadlocks.
@@ -220,6 +229,9 @@ public final class DropBoxManagerService extends SystemService {
         InputStream input = null;
         OutputStream output = null;
         final String tag = entry.getTag();
+        final long startTime = SystemClock.uptimeMillis();
+        long written = 0;
+        boolean dropped = false;
         try {
             int flags = entry.getFlags();
             if ((flags & DropBoxManager.IS_EMPTY) != 0) throw new IllegalArgumentException();
@@ -279,12 +291,15 @@ public final class DropBoxManagerService extends SystemService {
                     Slog.w(TAG, "Dropping: " + tag + " (" + temp.length() + " > " + max + " bytes)");
                     temp.delete();
                     temp = null;  // Pass temp = null to createEntry() to leave a tombstone
+                    dropped = true;
                     break;
                 }
+                written = len;
             } while (read > 0);
 
             long time = createEntry(temp, tag, flags);
             temp = null;
+            noteAdd(SystemClock.uptimeMillis() - startTime, dropped ? 0 : written, dropped);
 
             final Intent dropboxIntent = new Intent(DropBoxManager.ACTION_DROPBOX_ENTRY_ADDED);
             dropboxIntent.putExtra(DropBoxManager.EXTRA_TAG, tag);
@@ -307,6 +322,14 @@ public final class DropBoxManagerService extends SystemService {
         }
     }
 
+    private synchronized void noteAdd(long durationMs, long bytesWritten, boolean dropped) {
+        mNumAdds++;
+        if (dropped) mNumDropped++;
+        mTotalBytesWritten += bytesWritten;
+        mTotalAddDurationMs += durationMs;
+        if (durationMs > mMaxAddDurationMs) mMaxAddDurationMs = durationMs;
+    }
+
     public boolean isTagEnabled(String tag) {
         final long token = Binder.clearCallingIdentity();
         try {
@@ -387,6 +410,11 @@ public final class DropBoxManagerService extends SystemService {
         }
 
         out.append("Drop box contents: ").append(mAllFiles.contents.size()).append(" entries\n");
+        out.append("Ingest: ").append(mNumAdds).append(" added, ")
+                .append(mNumDropped).append(" dropped, ")
+                .append(mTotalBytesWritten).append(" bytes written, ")
+                .append(mNumAdds > 0 ? mTotalAddDurationMs / mNumAdds : 0).append("ms avg, ")
+                .append(mMaxAddDurationMs).append("ms max\n");
 
         if (!searchArgs.isEmpty()) {
             out.append("Searching for:");
@@ -743,16 +771,26 @@ public final class DropBoxManagerService extends SystemService {
      * @return the overall quota for storage (in bytes)
      */
     private synchronized long trimToFit() throws IOException {
+        // Settings are re-read along with the quota (a settings change forces
+        // a rescan), so a burst of adds doesn't query them for every entry.
+        long uptimeMillis = SystemClock.uptimeMillis();
+        boolean rescan = uptimeMillis > mCachedQuotaUptimeMillis + QUOTA_RESCAN_MILLIS;
+        if (rescan) {
+            mCachedAgeSeconds = Settings.Global.getInt(mContentResolver,
+                    Settings.Global.DROPBOX_AGE_SECONDS, DEFAULT_AGE_SECONDS);
+            mCachedMaxFiles = Settings.Global.getInt(mContentResolver,
+                    Settings.Global.DROPBOX_MAX_FILES, DEFAULT_MAX_FILES);
+        }
+
         // Expunge aged items (including tombstones marking deleted data).
 
-        int ageSeconds = Settings.Global.getInt(mContentResolver,
-                Settings.Global.DROPBOX_AGE_SECONDS, DEFAULT_AGE_SECONDS);
-        int maxFiles = Settings.Global.getInt(mContentResolver,
-                Settings.Global.DROPBOX_MAX_FILES, DEFAULT_MAX_FILES);
-        long cutoffMillis = System.currentTimeMillis() - ageSeconds * 1000;
+        long cutoffMillis = System.currentTimeMillis() - mCachedAgeSeconds * 1000L;
         while (!mAllFiles.contents.isEmpty()) {
             EntryFile entry = mAllFiles.contents.first();
-            if (entry.timestampMillis > cutoffMillis && mAllFiles.contents.size() < maxFiles) break;
+            if (entry.timestampMillis > cutoffMillis
+                    && mAllFiles.contents.size() < mCachedMaxFiles) {
+                break;
+            }
 
             FileList tag = mFilesByTag.get(entry.tag);
             if (tag != null && tag.contents.remove(entry)) tag.blocks -= entry.blocks;
@@ -765,8 +803,7 @@ public final class DropBoxManagerService extends SystemService {
         // that way when lots of data is available we can use it, but we'll get
         // out of the way if storage starts getting tight.
 
-        long uptimeMillis = SystemClock.uptimeMillis();
-        if (uptimeMillis > mCachedQuotaUptimeMillis + QUOTA_RESCAN_MILLIS) {
+        if (rescan) {
             int quotaPercent = Settings.Global.getInt(mContentResolver,
                     Settings.Global.DROPBOX_QUOTA_PERCENT, DEFAULT_QUOTA_PERCENT);
             int reservePercent = Settings.Global.getInt(mContentResolver,
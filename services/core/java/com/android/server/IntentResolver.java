@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 
 import android.net.Uri;
@@ -30,6 +31,7 @@ import android.util.FastImmutableArraySet;
 import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
+import android.util.LruCache;
 import android.util.MutableInt;
 import android.util.PrintWriterPrinter;
 import android.util.Slog;
@@ -57,6 +59,7 @@ public abstract class IntentResolver<F extends IntentFilter, R extends Object> {
         }
 
         mFilters.add(f);
+        invalidateQueryCache();
         int numS = register_intent_filter(f, f.schemesIterator(),
                 mSchemeToFilter, "      Scheme: ");
         int numT = register_mime_types(f, "      Type: ");
@@ -200,6 +203,7 @@ public abstract class IntentResolver<F extends IntentFilter, R extends Object> {
             Slog.v(TAG, "    Cleaning Lookup Maps:");
         }
 
+        invalidateQueryCache();
         int numS = unregister_intent_filter(f, f.schemesIterator(),
                 mSchemeToFilter, "      Scheme: ");
         int numT = unregister_mime_types(f, "      Type: ");
@@ -308,6 +312,10 @@ public abstract class IntentResolver<F extends IntentFilter, R extends Object> {
                 mTypedActionToFilter, packageName, printFilter, collapseDuplicates)) {
             curPrefix = sepPrefix;
         }
+        if (curPrefix == sepPrefix && packageName == null && mQueryCache != null) {
+            out.println();
+            dumpQueryCacheStats(out, prefix);
+        }
         return curPrefix == sepPrefix;
     }
 
@@ -442,6 +450,31 @@ public abstract class IntentResolver<F extends IntentFilter, R extends Object> {
         }
 
         FastImmutableArraySet<String> categories = getFastIntentCategories(intent);
+        if (mQueryCache != null && !debug) {
+            // Only the static IntentFilter.match() outcome is cached; stopped
+            // state, package restrictions and result construction are still
+            // evaluated for every query.
+            final QueryKey key = new QueryKey(intent, resolvedType, scheme);
+            MatchedFilters<F> matched = mQueryCache.get(key);
+            if (matched != null) {
+                mQueryCacheHits++;
+            } else {
+                mQueryCacheMisses++;
+                final int generation = mQueryCacheGeneration;
+                matched = new MatchedFilters<>();
+                collectMatches(intent, categories, resolvedType, scheme, firstTypeCut, matched);
+                collectMatches(intent, categories, resolvedType, scheme, secondTypeCut, matched);
+                collectMatches(intent, categories, resolvedType, scheme, thirdTypeCut, matched);
+                collectMatches(intent, categories, resolvedType, scheme, schemeCut, matched);
+                if (generation == mQueryCacheGeneration) {
+                    mQueryCache.put(key, matched);
+                }
+            }
+            buildResolveListFromMatches(intent, defaultOnly, matched, finalList, userId);
+            filterResults(finalList);
+            sortResults(finalList);
+            return finalList;
+        }
         if (firstTypeCut != null) {
             buildResolveList(intent, categories, debug, defaultOnly, resolvedType,
                     scheme, firstTypeCut, finalList, userId);
@@ -470,6 +503,34 @@ public abstract class IntentResolver<F extends IntentFilter, R extends Object> {
         return finalList;
     }
 
+    /**
+     * Enables caching of the filters matched by {@link #queryIntent} for up to
+     * {@code maxSize} distinct intents. The cache is dropped whenever a filter
+     * is added or removed, so it must only be enabled by resolvers whose
+     * filters are not modified after being added.
+     */
+    protected void enableQueryCache(int maxSize) {
+        mQueryCache = new LruCache<>(maxSize);
+    }
+
+    private void invalidateQueryCache() {
+        if (mQueryCache != null) {
+            mQueryCacheGeneration++;
+            mQueryCache.evictAll();
+        }
+    }
+
+    private void dumpQueryCacheStats(PrintWriter out, String prefix) {
+        if (mQueryCache == null) {
+            return;
+        }
+        out.print(prefix); out.print("Query cache: size="); out.print(mQueryCache.size());
+        out.print(" max="); out.print(mQueryCache.maxSize());
+        out.print(" hits="); out.print(mQueryCacheHits);
+        out.print(" misses="); out.print(mQueryCacheMisses);
+        out.print(" generation="); out.println(mQueryCacheGeneration);
+    }
+
     /**
      * Control whether the given filter is allowed to go into the result
      * list.  Mainly intended to prevent adding multiple filters for the
@@ -796,6 +857,119 @@ public abstract class IntentResolver<F extends IntentFilter, R extends Object> {
         }
     }
 
+    private void collectMatches(Intent intent, FastImmutableArraySet<String> categories,
+            String resolvedType, String scheme, F[] src, MatchedFilters<F> dest) {
+        final String action = intent.getAction();
+        final Uri data = intent.getData();
+        final int N = src != null ? src.length : 0;
+        F filter;
+        for (int i=0; i<N && (filter=src[i]) != null; i++) {
+            final int match = filter.match(action, resolvedType, scheme, data, categories, TAG);
+            if (match >= 0) {
+                dest.add(filter, match);
+            }
+        }
+    }
+
+    private void buildResolveListFromMatches(Intent intent, boolean defaultOnly,
+            MatchedFilters<F> matched, List<R> dest, int userId) {
+        final String packageName = intent.getPackage();
+        final boolean excludingStopped = intent.isExcludingStopped();
+        final int N = matched.size();
+        for (int i=0; i<N; i++) {
+            final F filter = matched.filterAt(i);
+            if (excludingStopped && isFilterStopped(filter, userId)) {
+                continue;
+            }
+            if (packageName != null && !isPackageForFilter(packageName, filter)) {
+                continue;
+            }
+            if (!allowFilterResult(filter, dest)) {
+                continue;
+            }
+            if (!defaultOnly || filter.hasCategory(Intent.CATEGORY_DEFAULT)) {
+                final R oneResult = newResult(filter, matched.matchAt(i), userId);
+                if (oneResult != null) {
+                    dest.add(oneResult);
+                }
+            }
+        }
+    }
+
+    /**
+     * The parts of an Intent that {@link IntentFilter#match} looks at.
+     */
+    private static final class QueryKey {
+        final String action;
+        final String resolvedType;
+        final String scheme;
+        final Uri data;
+        final Set<String> categories;
+        final int hashCode;
+
+        QueryKey(Intent intent, String resolvedType, String scheme) {
+            this.action = intent.getAction();
+            this.resolvedType = resolvedType;
+            this.scheme = scheme;
+            this.data = intent.getData();
+            final Set<String> cats = intent.getCategories();
+            this.categories = cats != null && !cats.isEmpty() ? new ArraySet<>(cats) : null;
+            this.hashCode = Objects.hash(action, resolvedType, scheme, data, categories);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof QueryKey)) {
+                return false;
+            }
+            final QueryKey other = (QueryKey) o;
+            return hashCode == other.hashCode
+                    && Objects.equals(action, other.action)
+                    && Objects.equals(resolvedType, other.resolvedType)
+                    && Objects.equals(scheme, other.scheme)
+                    && Objects.equals(data, other.data)
+                    && Objects.equals(categories, other.categories);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Filters that matched a {@link QueryKey}, in resolution order, along with
+     * the result of {@link IntentFilter#match} for each.
+     */
+    private static final class MatchedFilters<F> {
+        private Object[] mFilters = new Object[4];
+        private int[] mMatches = new int[4];
+        private int mSize;
+
+        void add(F filter, int match) {
+            if (mSize == mFilters.length) {
+                mFilters = Arrays.copyOf(mFilters, mSize * 2);
+                mMatches = Arrays.copyOf(mMatches, mSize * 2);
+            }
+            mFilters[mSize] = filter;
+            mMatches[mSize] = match;
+            mSize++;
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        @SuppressWarnings("unchecked")
+        F filterAt(int index) {
+            return (F) mFilters[index];
+        }
+
+        int matchAt(int index) {
+            return mMatches[index];
+        }
+    }
+
     // Sorts a List of IntentFilter objects into descending priority order.
     @SuppressWarnings("rawtypes")
     private static final Comparator mResolvePrioritySorter = new Comparator() {
@@ -848,4 +1022,12 @@ public abstract class IntentResolver<F extends IntentFilter, R extends Object> {
      * All of the actions that have been registered and specified a MIME type.
      */
     private final ArrayMap<String, F[]> mTypedActionToFilter = new ArrayMap<String, F[]>();
+
+    /**
+     * Optional cache of matched filters per intent, see {@link #enableQueryCache}.
+     */
+    private LruCache<QueryKey, MatchedFilters<F>> mQueryCache;
+    private int mQueryCacheGeneration;
+    private int mQueryCacheHits;
+    private int mQueryCacheMisses;
 }
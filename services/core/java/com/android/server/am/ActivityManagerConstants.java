@@ -61,6 +61,7 @@ final class ActivityManagerConstants extends ContentObserver {
     static final String KEY_SERVICE_MIN_RESTART_TIME_BETWEEN = "service_min_restart_time_between";
     static final String KEY_MAX_SERVICE_INACTIVITY = "service_max_inactivity";
     static final String KEY_BG_START_TIMEOUT = "service_bg_start_timeout";
+    static final String KEY_COALESCE_STICKY_BROADCASTS = "coalesce_sticky_broadcasts";
 
     private static final int DEFAULT_MAX_CACHED_PROCESSES = 32;
     private static final long DEFAULT_BACKGROUND_SETTLE_TIME = 60*1000;
@@ -86,6 +87,7 @@ final class ActivityManagerConstants extends ContentObserver {
     private static final long DEFAULT_SERVICE_MIN_RESTART_TIME_BETWEEN = 10*1000;
     private static final long DEFAULT_MAX_SERVICE_INACTIVITY = 30*60*1000;
     private static final long DEFAULT_BG_START_TIMEOUT = 15*1000;
+    private static final boolean DEFAULT_COALESCE_STICKY_BROADCASTS = false;
 
     // Maximum number of cached processes we will allow.
     public int MAX_CACHED_PROCESSES = DEFAULT_MAX_CACHED_PROCESSES;
@@ -178,6 +180,11 @@ final class ActivityManagerConstants extends ContentObserver {
     // allowing the next pending start to run.
     public long BG_START_TIMEOUT = DEFAULT_BG_START_TIMEOUT;
 
+    // Whether a sticky broadcast replaces an identical one from the same caller
+    // that is still waiting in the queue, as if FLAG_RECEIVER_REPLACE_PENDING
+    // had been set.
+    public boolean COALESCE_STICKY_BROADCASTS = DEFAULT_COALESCE_STICKY_BROADCASTS;
+
     private final ActivityManagerService mService;
     private ContentResolver mResolver;
     private final KeyValueListParser mParser = new KeyValueListParser(',');
@@ -292,6 +299,8 @@ final class ActivityManagerConstants extends ContentObserver {
                     DEFAULT_MAX_SERVICE_INACTIVITY);
             BG_START_TIMEOUT = mParser.getLong(KEY_BG_START_TIMEOUT,
                     DEFAULT_BG_START_TIMEOUT);
+            COALESCE_STICKY_BROADCASTS = mParser.getBoolean(KEY_COALESCE_STICKY_BROADCASTS,
+                    DEFAULT_COALESCE_STICKY_BROADCASTS);
             updateMaxCachedProcesses();
         }
     }
@@ -357,6 +366,8 @@ final class ActivityManagerConstants extends ContentObserver {
         pw.println(MAX_SERVICE_INACTIVITY);
         pw.print("  "); pw.print(KEY_BG_START_TIMEOUT); pw.print("=");
         pw.println(BG_START_TIMEOUT);
+        pw.print("  "); pw.print(KEY_COALESCE_STICKY_BROADCASTS); pw.print("=");
+        pw.println(COALESCE_STICKY_BROADCASTS);
 
         pw.println();
         if (mOverrideMaxCachedProcesses >= 0) {
@@ -120,6 +120,7 @@ import static com.android.server.am.ActivityManagerDebugConfig.DEBUG_MU;
 import static com.android.server.am.ActivityManagerDebugConfig.DEBUG_NETWORK;
 import static com.android.server.am.ActivityManagerDebugConfig.DEBUG_OOM_ADJ;
 import static com.android.server.am.ActivityManagerDebugConfig.DEBUG_OOM_ADJ_REASON;
+import static com.android.server.am.ActivityManagerDebugConfig.DEBUG_OOM_ADJ_VALIDATE;
 import static com.android.server.am.ActivityManagerDebugConfig.DEBUG_PERMISSIONS_REVIEW;
 import static com.android.server.am.ActivityManagerDebugConfig.DEBUG_POWER;
 import static com.android.server.am.ActivityManagerDebugConfig.DEBUG_PROCESSES;
@@ -1391,6 +1392,24 @@ public class ActivityManagerService extends IActivityManager.Stub
      */
     int mAdjSeq = 0;
 
+    /**
+     * Number of full and partial oom adj updates, and the number of processes
+     * evaluated by the partial ones.
+     */
+    int mNumFullOomAdjUpdates = 0;
+    int mNumPartialOomAdjUpdates = 0;
+    long mNumPartialOomAdjProcs = 0;
+
+    /**
+     * Temporary list of processes whose oom adj is re-evaluated by a partial update.
+     */
+    final ArrayList<ProcessRecord> mTmpOomAdjProcs = new ArrayList<>();
+
+    /**
+     * Membership set for {@link #mTmpOomAdjProcs}.
+     */
+    final ArraySet<ProcessRecord> mTmpOomAdjProcsSet = new ArraySet<>();
+
     /**
      * Current sequence id for process LRU updating.
      */
@@ -2739,6 +2758,8 @@ public class ActivityManagerService extends IActivityManager.Stub
         mHandlerThread = new ServiceThread(TAG,
                 THREAD_PRIORITY_FOREGROUND, false /*allowIo*/);
         mHandlerThread.start();
+        // Shown by "dumpsys activity -a" along with the rest of mHandler's looper.
+        mHandlerThread.getLooper().setDispatchStatsEnabled(true);
         mHandler = new MainHandler(mHandlerThread.getLooper());
         mUiHandler = mInjector.getUiHandler(this);
 
@@ -15938,6 +15959,9 @@ public class ActivityManagerService extends IActivityManager.Stub
                 pw.println("  mGoingToSleep=" + mStackSupervisor.mGoingToSleep);
                 pw.println("  mLaunchingActivity=" + mStackSupervisor.mLaunchingActivity);
                 pw.println("  mAdjSeq=" + mAdjSeq + " mLruSeq=" + mLruSeq);
+                pw.println("  mNumFullOomAdjUpdates=" + mNumFullOomAdjUpdates
+                        + " mNumPartialOomAdjUpdates=" + mNumPartialOomAdjUpdates
+                        + " mNumPartialOomAdjProcs=" + mNumPartialOomAdjProcs);
                 pw.println("  mNumNonCachedProcs=" + mNumNonCachedProcs
                         + " (" + mLruProcesses.size() + " total)"
                         + " mNumCachedHiddenProcs=" + mNumCachedHiddenProcs
@@ -19508,6 +19532,10 @@ public class ActivityManagerService extends IActivityManager.Stub
 
         final boolean replacePending =
                 (intent.getFlags()&Intent.FLAG_RECEIVER_REPLACE_PENDING) != 0;
+        // Sticky broadcasts only matter for their latest value, so they may
+        // optionally coalesce with an identical undelivered one.
+        final boolean coalesceSticky = sticky && !replacePending
+                && mConstants.COALESCE_STICKY_BROADCASTS;
 
         if (DEBUG_BROADCAST) Slog.v(TAG_BROADCAST, "Enqueueing broadcast: " + intent.getAction()
                 + " replacePending=" + replacePending);
@@ -19527,8 +19555,9 @@ public class ActivityManagerService extends IActivityManager.Stub
                     requiredPermissions, appOp, brOptions, registeredReceivers, resultTo,
                     resultCode, resultData, resultExtras, ordered, sticky, false, userId);
             if (DEBUG_BROADCAST) Slog.v(TAG_BROADCAST, "Enqueueing parallel broadcast " + r);
-            final boolean replaced = replacePending
-                    && (queue.replaceParallelBroadcastLocked(r) != null);
+            final boolean replaced = (replacePending
+                    && (queue.replaceParallelBroadcastLocked(r) != null))
+                    || (coalesceSticky && queue.coalesceParallelBroadcastLocked(r) != null);
             // Note: We assume resultTo is null for non-ordered broadcasts.
             if (!replaced) {
                 queue.enqueueParallelBroadcastLocked(r);
@@ -19629,7 +19658,8 @@ public class ActivityManagerService extends IActivityManager.Stub
                     "Enqueueing broadcast " + r.intent.getAction());
 
             final BroadcastRecord oldRecord =
-                    replacePending ? queue.replaceOrderedBroadcastLocked(r) : null;
+                    replacePending ? queue.replaceOrderedBroadcastLocked(r)
+                    : coalesceSticky ? queue.coalesceOrderedBroadcastLocked(r) : null;
             if (oldRecord != null) {
                 // Replaced, fire the result-to receiver.
                 if (oldRecord.resultTo != null) {
@@ -22433,17 +22463,91 @@ public class ActivityManagerService extends IActivityManager.Stub
         // need to do a complete oom adj.
         final int cachedAdj = app.curRawAdj >= ProcessList.CACHED_APP_MIN_ADJ
                 ? app.curRawAdj : ProcessList.UNKNOWN_ADJ;
-        boolean success = updateOomAdjLocked(app, cachedAdj, TOP_APP, false,
-                SystemClock.uptimeMillis());
-        if (oomAdjAll
-                && (wasCached != app.cached || app.curRawAdj == ProcessList.UNKNOWN_ADJ)) {
+        final long now = SystemClock.uptimeMillis();
+        boolean success = updateOomAdjLocked(app, cachedAdj, TOP_APP, false, now);
+        boolean needFullUpdate = oomAdjAll
+                && (wasCached != app.cached || app.curRawAdj == ProcessList.UNKNOWN_ADJ);
+
+        // The processes hosting services and providers this app is bound to may
+        // have had their importance raised or lowered along with it, so bring them
+        // up to date too rather than waiting for the next full update.  Only the
+        // hosts of processes whose state actually changed are visited.
+        final ArrayList<ProcessRecord> procs = mTmpOomAdjProcs;
+        final ArraySet<ProcessRecord> procsSet = mTmpOomAdjProcsSet;
+        procs.add(app);
+        procsSet.add(app);
+        for (int i = 0; i < procs.size() && !needFullUpdate; i++) {
+            final ProcessRecord proc = procs.get(i);
+            if (i > 0) {
+                final boolean procWasCached = proc.cached;
+                final int oldAdj = proc.curAdj;
+                final int oldProcState = proc.curProcState;
+                final int oldSchedGroup = proc.curSchedGroup;
+                final int procCachedAdj = proc.curRawAdj >= ProcessList.CACHED_APP_MIN_ADJ
+                        ? proc.curRawAdj : ProcessList.UNKNOWN_ADJ;
+                updateOomAdjLocked(proc, procCachedAdj, TOP_APP, false, now);
+                if (oomAdjAll && (procWasCached != proc.cached
+                        || proc.curRawAdj == ProcessList.UNKNOWN_ADJ)) {
+                    needFullUpdate = true;
+                    break;
+                }
+                if (proc.curAdj == oldAdj && proc.curProcState == oldProcState
+                        && proc.curSchedGroup == oldSchedGroup) {
+                    continue;
+                }
+            }
+            for (int j = proc.connections.size() - 1; j >= 0; j--) {
+                final ProcessRecord host = proc.connections.valueAt(j).binding.service.app;
+                if (host != null && procsSet.add(host)) {
+                    procs.add(host);
+                }
+            }
+            for (int j = proc.conProviders.size() - 1; j >= 0; j--) {
+                final ProcessRecord host = proc.conProviders.get(j).provider.proc;
+                if (host != null && procsSet.add(host)) {
+                    procs.add(host);
+                }
+            }
+        }
+
+        if (needFullUpdate) {
             // Changed to/from cached state, so apps after it in the LRU
             // list may also be changed.
             updateOomAdjLocked();
+        } else {
+            mNumPartialOomAdjUpdates++;
+            mNumPartialOomAdjProcs += procs.size();
+            if (DEBUG_OOM_ADJ_VALIDATE) {
+                validatePartialOomAdjLocked(procs);
+            }
         }
+        procs.clear();
+        procsSet.clear();
         return success;
     }
 
+    /**
+     * Runs a full oom adj update and reports any non-cached process in {@code procs}
+     * whose adjustment differs from the one computed by the preceding partial update.
+     */
+    private void validatePartialOomAdjLocked(ArrayList<ProcessRecord> procs) {
+        final int N = procs.size();
+        final int[] partialAdj = new int[N];
+        for (int i = 0; i < N; i++) {
+            partialAdj[i] = procs.get(i).curAdj;
+        }
+        updateOomAdjLocked();
+        for (int i = 0; i < N; i++) {
+            final ProcessRecord proc = procs.get(i);
+            if (proc.thread != null && proc.curAdj != partialAdj[i]
+                    && proc.curAdj < ProcessList.CACHED_APP_MIN_ADJ) {
+                Slog.w(TAG_OOM_ADJ, "Partial oom adj update of " + procs.get(0)
+                        + " left " + proc + " at " + partialAdj[i]
+                        + ", full update computed " + proc.curAdj);
+            }
+        }
+    }
+
     final void updateOomAdjLocked() {
         final ActivityRecord TOP_ACT = resumedAppLocked();
         final ProcessRecord TOP_APP = TOP_ACT != null ? TOP_ACT.app : null;
@@ -22458,6 +22562,8 @@ public class ActivityManagerService extends IActivityManager.Stub
             Slog.i(TAG, "updateOomAdj: top=" + TOP_ACT, e);
         }
 
+        mNumFullOomAdjUpdates++;
+
         // Reset state in all uid records.
         for (int i=mActiveUids.size()-1; i>=0; i--) {
             final UidRecord uidRec = mActiveUids.valueAt(i);
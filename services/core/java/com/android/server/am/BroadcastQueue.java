@@ -23,6 +23,7 @@ import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Set;
 
@@ -128,6 +129,28 @@ public final class BroadcastQueue {
     final long[] mSummaryHistoryDispatchTime = new  long[MAX_BROADCAST_SUMMARY_HISTORY];
     final long[] mSummaryHistoryFinishTime = new  long[MAX_BROADCAST_SUMMARY_HISTORY];
 
+    /**
+     * Upper bounds, in milliseconds, of the buckets of the latency histograms below.
+     * The last bucket collects everything slower than the final bound.
+     */
+    static final long[] LATENCY_BUCKET_BOUNDS_MS = {
+            10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+    /**
+     * Histogram of the time broadcasts spent queued before being dispatched.
+     */
+    final int[] mDispatchLatencyHistogram = new int[LATENCY_BUCKET_BOUNDS_MS.length + 1];
+
+    /**
+     * Histogram of the time broadcasts took from dispatch until every receiver finished.
+     */
+    final int[] mFinishLatencyHistogram = new int[LATENCY_BUCKET_BOUNDS_MS.length + 1];
+
+    /**
+     * Number of sticky broadcasts that replaced an identical queued one.
+     */
+    int mCoalescedCount;
+
     /**
      * Set when we current have a BROADCAST_INTENT_MSG in flight.
      */
@@ -269,6 +292,48 @@ public final class BroadcastQueue {
         return null;
     }
 
+    /**
+     * Find a queued, not yet delivered sticky broadcast from the same caller that is
+     * equivalent to {@code r}, replace it with {@code r} and return the old one.
+     */
+    public final BroadcastRecord coalesceParallelBroadcastLocked(BroadcastRecord r) {
+        return coalesceBroadcastLocked(mParallelBroadcasts, r, 0, "PARALLEL");
+    }
+
+    /**
+     * Find a queued, not yet delivered sticky broadcast from the same caller that is
+     * equivalent to {@code r}, replace it with {@code r} and return the old one.
+     */
+    public final BroadcastRecord coalesceOrderedBroadcastLocked(BroadcastRecord r) {
+        // The head of the ordered queue may already be in the middle of delivery.
+        return coalesceBroadcastLocked(mOrderedBroadcasts, r, 1, "ORDERED");
+    }
+
+    private BroadcastRecord coalesceBroadcastLocked(ArrayList<BroadcastRecord> queue,
+            BroadcastRecord r, int firstIndex, String typeForLogging) {
+        final Intent intent = r.intent;
+        for (int i = queue.size() - 1; i >= firstIndex; i--) {
+            final BroadcastRecord old = queue.get(i);
+            if (old.sticky && old.nextReceiver == 0 && old.userId == r.userId
+                    && old.callingUid == r.callingUid && old.ordered == r.ordered
+                    && old.resultTo == null && r.resultTo == null
+                    && Arrays.equals(old.requiredPermissions, r.requiredPermissions)
+                    && old.appOp == r.appOp && intent.filterEquals(old.intent)) {
+                if (DEBUG_BROADCAST) {
+                    Slog.v(TAG_BROADCAST, "***** COALESCING "
+                            + typeForLogging + " [" + mQueueName + "]: " + intent);
+                }
+                // Keep the original enqueue time so that the coalesced broadcast
+                // doesn't look younger than it is in the latency stats.
+                r.enqueueClockTime = old.enqueueClockTime;
+                queue.set(i, r);
+                mCoalescedCount++;
+                return old;
+            }
+        }
+        return null;
+    }
+
     private final void processCurBroadcastLocked(BroadcastRecord r,
             ProcessRecord app) throws RemoteException {
         if (DEBUG_BROADCAST)  Slog.v(TAG_BROADCAST,
@@ -1525,9 +1590,41 @@ public final class BroadcastQueue {
         mSummaryHistoryEnqueueTime[mSummaryHistoryNext] = r.enqueueClockTime;
         mSummaryHistoryDispatchTime[mSummaryHistoryNext] = r.dispatchClockTime;
         mSummaryHistoryFinishTime[mSummaryHistoryNext] = System.currentTimeMillis();
+        if (r.enqueueClockTime > 0 && r.dispatchClockTime >= r.enqueueClockTime) {
+            mDispatchLatencyHistogram[latencyBucket(
+                    r.dispatchClockTime - r.enqueueClockTime)]++;
+            mFinishLatencyHistogram[latencyBucket(
+                    mSummaryHistoryFinishTime[mSummaryHistoryNext] - r.dispatchClockTime)]++;
+        }
         mSummaryHistoryNext = ringAdvance(mSummaryHistoryNext, 1, MAX_BROADCAST_SUMMARY_HISTORY);
     }
 
+    private static int latencyBucket(long latencyMs) {
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKET_BOUNDS_MS.length
+                && latencyMs >= LATENCY_BUCKET_BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static void dumpLatencyHistogram(PrintWriter pw, String label, int[] histogram) {
+        pw.print("    "); pw.print(label); pw.print(":");
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] == 0) {
+                continue;
+            }
+            pw.print(" ");
+            if (i < LATENCY_BUCKET_BOUNDS_MS.length) {
+                pw.print("<"); pw.print(LATENCY_BUCKET_BOUNDS_MS[i]);
+            } else {
+                pw.print(">="); pw.print(LATENCY_BUCKET_BOUNDS_MS[i - 1]);
+            }
+            pw.print("ms="); pw.print(histogram[i]);
+        }
+        pw.println();
+    }
+
     boolean cleanupDisabledPackageReceiversLocked(
             String packageName, Set<String> filterByClasses, int userId, boolean doit) {
         boolean didSomething = false;
@@ -1747,6 +1844,15 @@ public final class BroadcastQueue {
                     pw.print("    extras: "); pw.println(bundle.toString());
                 }
             } while (ringIndex != lastIndex);
+
+            if (needSep) {
+                pw.println();
+            }
+            needSep = true;
+            pw.println("  Broadcast latency [" + mQueueName + "]:");
+            dumpLatencyHistogram(pw, "dispatch", mDispatchLatencyHistogram);
+            dumpLatencyHistogram(pw, "finish", mFinishLatencyHistogram);
+            pw.print("    coalesced sticky="); pw.println(mCoalescedCount);
         }
 
         return needSep;
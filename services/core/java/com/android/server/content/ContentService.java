@@ -390,6 +390,7 @@ public final class ContentService extends IContentService.Stub {
                 mRootNode.collectObserversLocked(uri, 0, observer, observerWantsSelfNotifications,
                         flags, userHandle, calls);
             }
+            removeDuplicateObserverCalls(calls);
             final int numCalls = calls.size();
             for (int i=0; i<numCalls; i++) {
                 ObserverCall oc = calls.get(i);
@@ -448,6 +449,39 @@ public final class ContentService extends IContentService.Stub {
                 UserHandle.getCallingUserId(), Build.VERSION_CODES.CUR_DEVELOPMENT);
     }
 
+    /**
+     * An observer registered on several nodes along the notified path (for example on both
+     * an authority and one of its children) would otherwise be called once per node with
+     * the very same Uri.  Keep only the first call for each observer binder and user.
+     * The list is almost always tiny, so a linear scan beats allocating a set.
+     */
+    static void removeDuplicateObserverCalls(ArrayList<ObserverCall> calls) {
+        final int numCalls = calls.size();
+        if (numCalls < 2) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < numCalls; i++) {
+            final ObserverCall oc = calls.get(i);
+            final IBinder binder = oc.mObserver.asBinder();
+            boolean duplicate = false;
+            for (int j = 0; j < kept; j++) {
+                final ObserverCall prev = calls.get(j);
+                if (prev.mObserver.asBinder() == binder
+                        && prev.mObserverUserId == oc.mObserverUserId) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate) {
+                calls.set(kept++, oc);
+            }
+        }
+        for (int i = numCalls - 1; i >= kept; i--) {
+            calls.remove(i);
+        }
+    }
+
     /**
      * Hide this class since it is not part of api,
      * but current unittest framework requires it to be public
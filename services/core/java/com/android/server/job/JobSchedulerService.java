@@ -145,6 +145,14 @@ public final class JobSchedulerService extends com.android.server.SystemService
      */
     final ArrayList<JobStatus> mPendingJobs = new ArrayList<>();
 
+    /**
+     * Cost of the passes over all registered jobs that look for newly ready work.
+     */
+    int mReadyScanCount;
+    long mReadyScanTotalMs;
+    long mReadyScanMaxMs;
+    long mReadyScanJobsEvaluated;
+
     int[] mStartedUsers = EmptyArray.INT;
 
     final JobHandler mHandler;
@@ -1302,11 +1310,13 @@ public final class JobSchedulerService extends com.android.server.SystemService
         if (DEBUG) {
             Slog.d(TAG, "queuing all ready jobs for execution:");
         }
+        final long startTime = SystemClock.uptimeMillis();
         noteJobsNonpending(mPendingJobs);
         mPendingJobs.clear();
         stopNonReadyActiveJobsLocked();
         mJobs.forEachJob(mReadyQueueFunctor);
         mReadyQueueFunctor.postProcess();
+        noteReadyScanLocked(startTime);
 
         if (DEBUG) {
             final int queuedJobs = mPendingJobs.size();
@@ -1456,11 +1466,23 @@ public final class JobSchedulerService extends com.android.server.SystemService
     private void maybeQueueReadyJobsForExecutionLocked() {
         if (DEBUG) Slog.d(TAG, "Maybe queuing ready jobs...");
 
+        final long startTime = SystemClock.uptimeMillis();
         noteJobsNonpending(mPendingJobs);
         mPendingJobs.clear();
         stopNonReadyActiveJobsLocked();
         mJobs.forEachJob(mMaybeQueueFunctor);
         mMaybeQueueFunctor.postProcess();
+        noteReadyScanLocked(startTime);
+    }
+
+    private void noteReadyScanLocked(long startTime) {
+        final long duration = SystemClock.uptimeMillis() - startTime;
+        mReadyScanCount++;
+        mReadyScanTotalMs += duration;
+        if (duration > mReadyScanMaxMs) {
+            mReadyScanMaxMs = duration;
+        }
+        mReadyScanJobsEvaluated += mJobs.size();
     }
 
     /**
@@ -2246,6 +2268,11 @@ public final class JobSchedulerService extends com.android.server.SystemService
             mConstants.dump(pw);
             pw.println();
             pw.println("Started users: " + Arrays.toString(mStartedUsers));
+            pw.print("Ready scans: "); pw.print(mReadyScanCount);
+            pw.print(" jobs evaluated="); pw.print(mReadyScanJobsEvaluated);
+            pw.print(" total="); TimeUtils.formatDuration(mReadyScanTotalMs, pw);
+            pw.print(" max="); TimeUtils.formatDuration(mReadyScanMaxMs, pw);
+            pw.println();
             pw.print("Registered ");
             pw.print(mJobs.size());
             pw.println(" jobs:");
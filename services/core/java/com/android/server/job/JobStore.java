@@ -77,6 +77,9 @@ public final class JobStore {
     final Context mContext;
 
     private int mDirtyOperations;
+    /** Whether a write has been posted to the IO thread but hasn't snapshotted the jobs yet. */
+    private boolean mWriteScheduled;
+    private final Runnable mWriteRunnable = new WriteJobsMapToDiskRunnable();
 
     private static final Object sSingletonLock = new Object();
     private final AtomicFile mJobsFile;
@@ -247,10 +250,16 @@ public final class JobStore {
     private void maybeWriteStatusToDiskAsync() {
         mDirtyOperations++;
         if (mDirtyOperations >= MAX_OPS_BEFORE_WRITE) {
+            if (mWriteScheduled) {
+                // The pending write copies the job set when it runs, so it will include
+                // this change as well.
+                return;
+            }
             if (DEBUG) {
                 Slog.v(TAG, "Writing jobs to disk.");
             }
-            mIoHandler.post(new WriteJobsMapToDiskRunnable());
+            mWriteScheduled = true;
+            mIoHandler.post(mWriteRunnable);
         }
     }
 
@@ -269,6 +278,8 @@ public final class JobStore {
             final long startElapsed = SystemClock.elapsedRealtime();
             final List<JobStatus> storeCopy = new ArrayList<JobStatus>();
             synchronized (mLock) {
+                // Any change made after this point needs a new write.
+                mWriteScheduled = false;
                 // Clone the jobs so we can release the lock before writing.
                 mJobSet.forEachJob(new JobStatusFunctor() {
                     @Override
@@ -203,10 +203,12 @@ public class NetworkStatsCollection implements FileRotator.Reader {
 
         for (int i = 0; i < mStats.size(); i++) {
             final Key key = mStats.keyAt(i);
-            if (key.uid == uid && NetworkStats.setMatches(set, key.set) && key.tag == tag
-                    && templateMatches(template, key.ident)) {
+            if (key.uid == uid && NetworkStats.setMatches(set, key.set) && key.tag == tag) {
                 final NetworkStatsHistory value = mStats.valueAt(i);
-                combined.recordHistory(value, start, end);
+                // Check the time range first; matching the template is more expensive
+                if (overlaps(value, start, end) && templateMatches(template, key.ident)) {
+                    combined.recordHistory(value, start, end);
+                }
             }
         }
         return combined;
@@ -238,10 +240,12 @@ public class NetworkStatsCollection implements FileRotator.Reader {
 
         for (int i = 0; i < mStats.size(); i++) {
             final Key key = mStats.keyAt(i);
-            if (templateMatches(template, key.ident)
+            final NetworkStatsHistory value = mStats.valueAt(i);
+            // Cheapest checks first; most keys belong to other uids or are out of range
+            if (key.set < NetworkStats.SET_DEBUG_START
                     && NetworkStatsAccess.isAccessibleToUser(key.uid, callerUid, accessLevel)
-                    && key.set < NetworkStats.SET_DEBUG_START) {
-                final NetworkStatsHistory value = mStats.valueAt(i);
+                    && overlaps(value, start, end)
+                    && templateMatches(template, key.ident)) {
                 historyEntry = value.getValues(start, end, now, historyEntry);
 
                 entry.iface = IFACE_ALL;
@@ -629,6 +633,14 @@ public class NetworkStatsCollection implements FileRotator.Reader {
         }
     }
 
+    /**
+     * Test if given {@link NetworkStatsHistory} has any buckets inside the requested range;
+     * other histories contribute nothing to queries over that range.
+     */
+    private static boolean overlaps(NetworkStatsHistory history, long start, long end) {
+        return history.getStart() < end && history.getEnd() > start;
+    }
+
     /**
      * Test if given {@link NetworkTemplate} matches any {@link NetworkIdentity}
      * in the given {@link NetworkIdentitySet}.
@@ -319,6 +319,15 @@ public class NotificationManagerService extends SystemService {
     @GuardedBy("mNotificationLock")
     final ArrayList<NotificationRecord> mNotificationList =
             new ArrayList<NotificationRecord>();
+    // Cost of re-extracting signals and sorting mNotificationList, for dumpsys.
+    @GuardedBy("mNotificationLock")
+    private int mRankingSortCount;
+    @GuardedBy("mNotificationLock")
+    private int mRankingSortUpdateCount;
+    @GuardedBy("mNotificationLock")
+    private long mRankingSortTotalMs;
+    @GuardedBy("mNotificationLock")
+    private long mRankingSortMaxMs;
     @GuardedBy("mNotificationLock")
     final ArrayMap<String, NotificationRecord> mNotificationsByKey =
             new ArrayMap<String, NotificationRecord>();
@@ -3105,6 +3114,10 @@ public class NotificationManagerService extends SystemService {
                     pw.println("  mCallState=" + callStateToString(mCallState));
                     pw.println("  mSystemReady=" + mSystemReady);
                     pw.println("  mMaxPackageEnqueueRate=" + mMaxPackageEnqueueRate);
+                    pw.println("  Ranking sorts: " + mRankingSortCount
+                            + " (" + mRankingSortUpdateCount + " sent updates)"
+                            + " total=" + mRankingSortTotalMs + "ms"
+                            + " max=" + mRankingSortMaxMs + "ms");
                 }
                 pw.println("  mArchive=" + mArchive.toString());
                 Iterator<StatusBarNotification> iter = mArchive.descendingIterator();
@@ -4123,39 +4136,60 @@ public class NotificationManagerService extends SystemService {
         }
     }
 
-    private void handleRankingSort(Message msg) {
-        if (!(msg.obj instanceof Boolean)) return;
+    private void handleRankingSort(boolean forceUpdate) {
         if (mRankingHelper == null) return;
-        boolean forceUpdate = ((Boolean) msg.obj == null) ? false : (boolean) msg.obj;
         synchronized (mNotificationLock) {
-            final int N = mNotificationList.size();
-            // Any field that can change via one of the extractors or by the assistant
-            // needs to be added here.
-            ArrayList<String> orderBefore = new ArrayList<String>(N);
-            ArrayList<String> groupOverrideBefore = new ArrayList<>(N);
-            int[] visibilities = new int[N];
-            boolean[] showBadges = new boolean[N];
-            for (int i = 0; i < N; i++) {
-                final NotificationRecord r = mNotificationList.get(i);
-                orderBefore.add(r.getKey());
-                groupOverrideBefore.add(r.sbn.getGroupKey());
-                visibilities[i] = r.getPackageVisibilityOverride();
-                showBadges[i] = r.canShowBadge();
-                mRankingHelper.extractSignals(r);
-            }
-            mRankingHelper.sort(mNotificationList);
-            for (int i = 0; i < N; i++) {
-                final NotificationRecord r = mNotificationList.get(i);
-                if (forceUpdate
-                        || !orderBefore.get(i).equals(r.getKey())
-                        || visibilities[i] != r.getPackageVisibilityOverride()
-                        || !groupOverrideBefore.get(i).equals(r.sbn.getGroupKey())
-                        || showBadges[i] != r.canShowBadge()) {
+            final long startTime = SystemClock.uptimeMillis();
+            try {
+                if (handleRankingSortLocked(forceUpdate)) {
+                    mRankingSortUpdateCount++;
                     scheduleSendRankingUpdate();
-                    return;
                 }
+            } finally {
+                final long duration = SystemClock.uptimeMillis() - startTime;
+                mRankingSortCount++;
+                mRankingSortTotalMs += duration;
+                if (duration > mRankingSortMaxMs) {
+                    mRankingSortMaxMs = duration;
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-extracts signals for and sorts all notifications.
+     *
+     * @return whether listeners need a ranking update.
+     */
+    @GuardedBy("mNotificationLock")
+    private boolean handleRankingSortLocked(boolean forceUpdate) {
+        final int N = mNotificationList.size();
+        // Any field that can change via one of the extractors or by the assistant
+        // needs to be added here.
+        ArrayList<String> orderBefore = new ArrayList<String>(N);
+        ArrayList<String> groupOverrideBefore = new ArrayList<>(N);
+        int[] visibilities = new int[N];
+        boolean[] showBadges = new boolean[N];
+        for (int i = 0; i < N; i++) {
+            final NotificationRecord r = mNotificationList.get(i);
+            orderBefore.add(r.getKey());
+            groupOverrideBefore.add(r.sbn.getGroupKey());
+            visibilities[i] = r.getPackageVisibilityOverride();
+            showBadges[i] = r.canShowBadge();
+            mRankingHelper.extractSignals(r);
+        }
+        mRankingHelper.sort(mNotificationList);
+        for (int i = 0; i < N; i++) {
+            final NotificationRecord r = mNotificationList.get(i);
+            if (forceUpdate
+                    || !orderBefore.get(i).equals(r.getKey())
+                    || visibilities[i] != r.getPackageVisibilityOverride()
+                    || !groupOverrideBefore.get(i).equals(r.sbn.getGroupKey())
+                    || showBadges[i] != r.canShowBadge()) {
+                return true;
             }
         }
+        return false;
     }
 
     @GuardedBy("mNotificationLock")
@@ -4256,6 +4290,11 @@ public class NotificationManagerService extends SystemService {
 
     private final class RankingHandlerWorker extends Handler implements RankingHandler
     {
+        // Whether any sort request since the last sort asked for a forced ranking update.
+        // Sort messages are coalesced, so the flag is kept here rather than in the message.
+        @GuardedBy("this")
+        private boolean mForceSortPending;
+
         public RankingHandlerWorker(Looper looper) {
             super(looper);
         }
@@ -4266,18 +4305,28 @@ public class NotificationManagerService extends SystemService {
                 case MESSAGE_RECONSIDER_RANKING:
                     handleRankingReconsideration(msg);
                     break;
-                case MESSAGE_RANKING_SORT:
-                    handleRankingSort(msg);
+                case MESSAGE_RANKING_SORT: {
+                    final boolean forceUpdate;
+                    synchronized (this) {
+                        forceUpdate = mForceSortPending;
+                        mForceSortPending = false;
+                    }
+                    handleRankingSort(forceUpdate);
                     break;
+                }
             }
         }
 
         public void requestSort(boolean forceUpdate) {
+            // Sorts are coalesced; don't let a later unforced request drop a pending forced
+            // ranking update.
+            if (forceUpdate) {
+                synchronized (this) {
+                    mForceSortPending = true;
+                }
+            }
             removeMessages(MESSAGE_RANKING_SORT);
-            Message msg = Message.obtain();
-            msg.what = MESSAGE_RANKING_SORT;
-            msg.obj = forceUpdate;
-            sendMessage(msg);
+            sendEmptyMessage(MESSAGE_RANKING_SORT);
         }
 
         public void requestReconsideration(RankingReconsideration recon) {
@@ -414,6 +414,9 @@ public class PackageManagerService extends IPackageManager.Stub
     // Cap the size of permission trees that 3rd party apps can define
     private static final int MAX_PERMISSION_TREE_FOOTPRINT = 32768;     // characters of text
 
+    // Number of distinct intents whose matching filters are cached per resolver
+    private static final int INTENT_QUERY_CACHE_SIZE = 256;
+
     // Suffix used during package installation when copying/moving
     // package apks to install directory.
     private static final String INSTALL_PACKAGE_SUFFIX = "-";
@@ -888,6 +891,12 @@ public class PackageManagerService extends IPackageManager.Stub
     final ArrayMap<String, SparseArray<SharedLibraryEntry>> mStaticLibsByDeclaringPackage =
             new ArrayMap<>();
 
+    // Accumulated scanDirLI() phase timings, reported once the boot scan finishes.
+    private int mDirScanPackageCount;
+    private long mDirScanParseTime;
+    private long mDirScanWaitTime;
+    private long mDirScanCommitTime;
+
     // All available activities, for your resolving pleasure.
     final ActivityIntentResolver mActivities =
             new ActivityIntentResolver();
@@ -2837,6 +2846,10 @@ public class PackageManagerService extends IPackageManager.Stub
             Slog.i(TAG, "Time to scan packages: "
                     + ((SystemClock.uptimeMillis()-startTime)/1000f)
                     + " seconds");
+            Slog.i(TAG, "Scanned " + mDirScanPackageCount + " packages ("
+                    + PackageParser.getCachedPackageReadCount() + " cached): parse "
+                    + mDirScanParseTime + "ms over all threads, waited for parse "
+                    + mDirScanWaitTime + "ms, scan " + mDirScanCommitTime + "ms");
 
             // If the platform SDK has changed since the last time we booted,
             // we need to re-grant app permission to catch any new ones that
@@ -8699,6 +8712,8 @@ public class PackageManagerService extends IPackageManager.Stub
         }
 
         // Process results one by one
+        final long scanStartTime = SystemClock.uptimeMillis();
+        final int packageCount = fileCount;
         for (; fileCount > 0; fileCount--) {
             ParallelPackageParser.ParseResult parseResult = parallelPackageParser.take();
             Throwable throwable = parseResult.throwable;
@@ -8736,6 +8751,17 @@ public class PackageManagerService extends IPackageManager.Stub
                 removeCodePathLI(parseResult.scanFile);
             }
         }
+        final long waitTime = parallelPackageParser.getWaitTimeMillis();
+        final long scanTime = SystemClock.uptimeMillis() - scanStartTime - waitTime;
+        mDirScanParseTime += parallelPackageParser.getParseTimeMillis();
+        mDirScanWaitTime += waitTime;
+        mDirScanCommitTime += scanTime;
+        mDirScanPackageCount += packageCount;
+        if (DEBUG_PACKAGE_SCANNING) {
+            Log.d(TAG, "Scanned " + packageCount + " packages in " + dir
+                    + ": parse=" + parallelPackageParser.getParseTimeMillis()
+                    + "ms wait=" + waitTime + "ms scan=" + scanTime + "ms");
+        }
         parallelPackageParser.close();
     }
 
@@ -12899,6 +12925,10 @@ public class PackageManagerService extends IPackageManager.Stub
 
     final class ActivityIntentResolver
             extends IntentResolver<PackageParser.ActivityIntentInfo, ResolveInfo> {
+        ActivityIntentResolver() {
+            enableQueryCache(INTENT_QUERY_CACHE_SIZE);
+        }
+
         public List<ResolveInfo> queryIntent(Intent intent, String resolvedType,
                 boolean defaultOnly, int userId) {
             if (!sUserManager.exists(userId)) return null;
@@ -13449,6 +13479,10 @@ public class PackageManagerService extends IPackageManager.Stub
 
     private final class ServiceIntentResolver
             extends IntentResolver<PackageParser.ServiceIntentInfo, ResolveInfo> {
+        ServiceIntentResolver() {
+            enableQueryCache(INTENT_QUERY_CACHE_SIZE);
+        }
+
         public List<ResolveInfo> queryIntent(Intent intent, String resolvedType,
                 boolean defaultOnly, int userId) {
             mFlags = defaultOnly ? PackageManager.MATCH_DEFAULT_ONLY : 0;
@@ -18,6 +18,7 @@ package com.android.server.pm;
 
 import android.content.pm.PackageParser;
 import android.os.Process;
+import android.os.SystemClock;
 import android.os.Trace;
 import android.util.DisplayMetrics;
 
@@ -29,6 +30,7 @@ import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static android.os.Trace.TRACE_TAG_PACKAGE_MANAGER;
 
@@ -49,6 +51,11 @@ class ParallelPackageParser implements AutoCloseable {
     private final PackageParser.Callback mPackageParserCallback;
     private volatile String mInterruptedInThread;
 
+    // Time spent parsing, summed over all parsing threads
+    private final AtomicLong mParseTimeMs = new AtomicLong();
+    // Time the consumer spent blocked in take() waiting for a result
+    private long mWaitTimeMs;
+
     private final BlockingQueue<ParseResult> mQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
 
     private final ExecutorService mService = ConcurrentUtils.newFixedThreadPool(MAX_THREADS,
@@ -89,7 +96,10 @@ class ParallelPackageParser implements AutoCloseable {
             if (mInterruptedInThread != null) {
                 throw new InterruptedException("Interrupted in " + mInterruptedInThread);
             }
-            return mQueue.take();
+            final long startTime = SystemClock.uptimeMillis();
+            final ParseResult result = mQueue.take();
+            mWaitTimeMs += SystemClock.uptimeMillis() - startTime;
+            return result;
         } catch (InterruptedException e) {
             // We cannot recover from interrupt here
             Thread.currentThread().interrupt();
@@ -105,6 +115,7 @@ class ParallelPackageParser implements AutoCloseable {
     public void submit(File scanFile, int parseFlags) {
         mService.submit(() -> {
             ParseResult pr = new ParseResult();
+            final long startTime = SystemClock.uptimeMillis();
             Trace.traceBegin(TRACE_TAG_PACKAGE_MANAGER, "parallel parsePackage [" + scanFile + "]");
             try {
                 PackageParser pp = new PackageParser();
@@ -119,6 +130,7 @@ class ParallelPackageParser implements AutoCloseable {
                 pr.throwable = e;
             } finally {
                 Trace.traceEnd(TRACE_TAG_PACKAGE_MANAGER);
+                mParseTimeMs.addAndGet(SystemClock.uptimeMillis() - startTime);
             }
             try {
                 mQueue.put(pr);
@@ -132,6 +144,20 @@ class ParallelPackageParser implements AutoCloseable {
         });
     }
 
+    /**
+     * Returns the time spent parsing packages so far, summed over all parsing threads.
+     */
+    public long getParseTimeMillis() {
+        return mParseTimeMs.get();
+    }
+
+    /**
+     * Returns the time the caller of {@link #take()} has spent waiting for results so far.
+     */
+    public long getWaitTimeMillis() {
+        return mWaitTimeMs;
+    }
+
     @VisibleForTesting
     protected PackageParser.Package parsePackage(PackageParser packageParser, File scanFile,
             int parseFlags) throws PackageParser.PackageParserException {
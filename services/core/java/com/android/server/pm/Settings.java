@@ -100,17 +100,19 @@ import org.xmlpull.v1.XmlSerializer;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -170,6 +172,7 @@ final class Settings {
     private static final boolean DEBUG_MU = false;
     private static final boolean DEBUG_KERNEL = false;
     private static final boolean DEBUG_PARSER = false;
+    private static final boolean DEBUG_WRITE = false;
 
     private static final String RUNTIME_PERMISSIONS_FILE_NAME = "runtime-permissions.xml";
 
@@ -257,6 +260,13 @@ final class Settings {
     private final File mSettingsFilename;
     private final File mBackupSettingsFilename;
     private final File mPackageListFilename;
+
+    /** Length and SHA-256 digest of the last packages.xml we successfully wrote */
+    private int mLastSettingsLength;
+    private byte[] mLastSettingsDigest;
+    /** Length and SHA-256 digest of the last packages.list we successfully wrote */
+    private int mLastPackageListLength;
+    private byte[] mLastPackageListDigest;
     private final File mStoppedPackagesFilename;
     private final File mBackupStoppedPackagesFilename;
     /** The top level directory in configfs for sdcardfs to push the package->uid,userId mappings */
@@ -2443,6 +2453,35 @@ final class Settings {
     void writeLPr() {
         //Debug.startMethodTracing("/data/system/packageprof", 8 * 1024 * 1024);
 
+        final long startTime = SystemClock.uptimeMillis();
+        mPastSignatures.clear();
+
+        // Render the settings into memory first, so that a write which would
+        // produce exactly the same packages.xml doesn't touch flash at all.
+        // The whole document is still serialized and hashed on every call.
+        final byte[] contents;
+        try {
+            final ByteArrayOutputStream str = new ByteArrayOutputStream(
+                    Math.max(mLastSettingsLength, 16 * 1024));
+            serializeSettingsLPr(str);
+            contents = str.toByteArray();
+        } catch (XmlPullParserException | IOException e) {
+            Slog.wtf(PackageManagerService.TAG, "Unable to write package manager settings, "
+                    + "current changes will be lost at reboot", e);
+            return;
+        }
+
+        final byte[] digest = digestOf(contents);
+        if (contents.length == mLastSettingsLength && digest != null
+                && MessageDigest.isEqual(digest, mLastSettingsDigest)
+                && mSettingsFilename.exists() && !mBackupSettingsFilename.exists()) {
+            if (DEBUG_WRITE) {
+                Slog.d(TAG, "packages.xml unchanged, skipping rewrite");
+            }
+            writeDependentStateLPr(startTime);
+            return;
+        }
+
         // Keep the old settings around until we know the new ones have
         // been successfully written.
         if (mSettingsFilename.exists()) {
@@ -2463,122 +2502,11 @@ final class Settings {
             }
         }
 
-        mPastSignatures.clear();
-
         try {
             FileOutputStream fstr = new FileOutputStream(mSettingsFilename);
-            BufferedOutputStream str = new BufferedOutputStream(fstr);
-
-            //XmlSerializer serializer = XmlUtils.serializerInstance();
-            XmlSerializer serializer = new FastXmlSerializer();
-            serializer.setOutput(str, StandardCharsets.UTF_8.name());
-            serializer.startDocument(null, true);
-            serializer.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", true);
-
-            serializer.startTag(null, "packages");
-
-            for (int i = 0; i < mVersion.size(); i++) {
-                final String volumeUuid = mVersion.keyAt(i);
-                final VersionInfo ver = mVersion.valueAt(i);
-
-                serializer.startTag(null, TAG_VERSION);
-                XmlUtils.writeStringAttribute(serializer, ATTR_VOLUME_UUID, volumeUuid);
-                XmlUtils.writeIntAttribute(serializer, ATTR_SDK_VERSION, ver.sdkVersion);
-                XmlUtils.writeIntAttribute(serializer, ATTR_DATABASE_VERSION, ver.databaseVersion);
-                XmlUtils.writeStringAttribute(serializer, ATTR_FINGERPRINT, ver.fingerprint);
-                serializer.endTag(null, TAG_VERSION);
-            }
-
-            if (mVerifierDeviceIdentity != null) {
-                serializer.startTag(null, "verifier");
-                serializer.attribute(null, "device", mVerifierDeviceIdentity.toString());
-                serializer.endTag(null, "verifier");
-            }
-
-            if (mReadExternalStorageEnforced != null) {
-                serializer.startTag(null, TAG_READ_EXTERNAL_STORAGE);
-                serializer.attribute(
-                        null, ATTR_ENFORCEMENT, mReadExternalStorageEnforced ? "1" : "0");
-                serializer.endTag(null, TAG_READ_EXTERNAL_STORAGE);
-            }
-
-            serializer.startTag(null, "permission-trees");
-            for (BasePermission bp : mPermissionTrees.values()) {
-                writePermissionLPr(serializer, bp);
-            }
-            serializer.endTag(null, "permission-trees");
-
-            serializer.startTag(null, "permissions");
-            for (BasePermission bp : mPermissions.values()) {
-                writePermissionLPr(serializer, bp);
-            }
-            serializer.endTag(null, "permissions");
-
-            for (final PackageSetting pkg : mPackages.values()) {
-                writePackageLPr(serializer, pkg);
-            }
-
-            for (final PackageSetting pkg : mDisabledSysPackages.values()) {
-                writeDisabledSysPackageLPr(serializer, pkg);
-            }
-
-            for (final SharedUserSetting usr : mSharedUsers.values()) {
-                serializer.startTag(null, "shared-user");
-                serializer.attribute(null, ATTR_NAME, usr.name);
-                serializer.attribute(null, "userId",
-                        Integer.toString(usr.userId));
-                usr.signatures.writeXml(serializer, "sigs", mPastSignatures);
-                writePermissionsLPr(serializer, usr.getPermissionsState()
-                        .getInstallPermissionStates());
-                serializer.endTag(null, "shared-user");
-            }
-
-            if (mPackagesToBeCleaned.size() > 0) {
-                for (PackageCleanItem item : mPackagesToBeCleaned) {
-                    final String userStr = Integer.toString(item.userId);
-                    serializer.startTag(null, "cleaning-package");
-                    serializer.attribute(null, ATTR_NAME, item.packageName);
-                    serializer.attribute(null, ATTR_CODE, item.andCode ? "true" : "false");
-                    serializer.attribute(null, ATTR_USER, userStr);
-                    serializer.endTag(null, "cleaning-package");
-                }
-            }
-
-            if (mRenamedPackages.size() > 0) {
-                for (Map.Entry<String, String> e : mRenamedPackages.entrySet()) {
-                    serializer.startTag(null, "renamed-package");
-                    serializer.attribute(null, "new", e.getKey());
-                    serializer.attribute(null, "old", e.getValue());
-                    serializer.endTag(null, "renamed-package");
-                }
-            }
-
-            final int numIVIs = mRestoredIntentFilterVerifications.size();
-            if (numIVIs > 0) {
-                if (DEBUG_DOMAIN_VERIFICATION) {
-                    Slog.i(TAG, "Writing restored-ivi entries to packages.xml");
-                }
-                serializer.startTag(null, "restored-ivi");
-                for (int i = 0; i < numIVIs; i++) {
-                    IntentFilterVerificationInfo ivi = mRestoredIntentFilterVerifications.valueAt(i);
-                    writeDomainVerificationsLPr(serializer, ivi);
-                }
-                serializer.endTag(null, "restored-ivi");
-            } else {
-                if (DEBUG_DOMAIN_VERIFICATION) {
-                    Slog.i(TAG, "  no restored IVI entries to write");
-                }
-            }
-
-            mKeySetManagerService.writeKeySetManagerServiceLPr(serializer);
-
-            serializer.endTag(null, "packages");
-
-            serializer.endDocument();
-
-            str.flush();
+            fstr.write(contents);
             FileUtils.sync(fstr);
-            str.close();
+            fstr.close();
 
             // New settings successfully written, old ones are no longer
             // needed.
@@ -2587,20 +2515,17 @@ final class Settings {
                     FileUtils.S_IRUSR|FileUtils.S_IWUSR
                     |FileUtils.S_IRGRP|FileUtils.S_IWGRP,
                     -1, -1);
+            mLastSettingsLength = contents.length;
+            mLastSettingsDigest = digest;
 
-            writeKernelMappingLPr();
-            writePackageListLPr();
-            writeAllUsersPackageRestrictionsLPr();
-            writeAllRuntimePermissionsLPr();
+            writeDependentStateLPr(startTime);
             return;
-
-        } catch(XmlPullParserException e) {
-            Slog.wtf(PackageManagerService.TAG, "Unable to write package manager settings, "
-                    + "current changes will be lost at reboot", e);
         } catch(java.io.IOException e) {
             Slog.wtf(PackageManagerService.TAG, "Unable to write package manager settings, "
                     + "current changes will be lost at reboot", e);
         }
+        mLastSettingsLength = 0;
+        mLastSettingsDigest = null;
         // Clean up partially written files
         if (mSettingsFilename.exists()) {
             if (!mSettingsFilename.delete()) {
@@ -2611,6 +2536,132 @@ final class Settings {
         //Debug.stopMethodTracing();
     }
 
+    /**
+     * Writes the files derived from the package settings that are persisted
+     * alongside packages.xml.
+     */
+    private void writeDependentStateLPr(long startTime) {
+        writeKernelMappingLPr();
+        writePackageListLPr();
+        writeAllUsersPackageRestrictionsLPr();
+        writeAllRuntimePermissionsLPr();
+        if (DEBUG_WRITE) {
+            Slog.d(TAG, "Package settings written in "
+                    + (SystemClock.uptimeMillis() - startTime) + "ms");
+        }
+    }
+
+    private void serializeSettingsLPr(OutputStream str)
+            throws IOException, XmlPullParserException {
+        //XmlSerializer serializer = XmlUtils.serializerInstance();
+        XmlSerializer serializer = new FastXmlSerializer();
+        serializer.setOutput(str, StandardCharsets.UTF_8.name());
+        serializer.startDocument(null, true);
+        serializer.setFeature("http://xmlpull.org/v1/doc/features.html#indent-output", true);
+
+        serializer.startTag(null, "packages");
+
+        for (int i = 0; i < mVersion.size(); i++) {
+            final String volumeUuid = mVersion.keyAt(i);
+            final VersionInfo ver = mVersion.valueAt(i);
+
+            serializer.startTag(null, TAG_VERSION);
+            XmlUtils.writeStringAttribute(serializer, ATTR_VOLUME_UUID, volumeUuid);
+            XmlUtils.writeIntAttribute(serializer, ATTR_SDK_VERSION, ver.sdkVersion);
+            XmlUtils.writeIntAttribute(serializer, ATTR_DATABASE_VERSION, ver.databaseVersion);
+            XmlUtils.writeStringAttribute(serializer, ATTR_FINGERPRINT, ver.fingerprint);
+            serializer.endTag(null, TAG_VERSION);
+        }
+
+        if (mVerifierDeviceIdentity != null) {
+            serializer.startTag(null, "verifier");
+            serializer.attribute(null, "device", mVerifierDeviceIdentity.toString());
+            serializer.endTag(null, "verifier");
+        }
+
+        if (mReadExternalStorageEnforced != null) {
+            serializer.startTag(null, TAG_READ_EXTERNAL_STORAGE);
+            serializer.attribute(
+                    null, ATTR_ENFORCEMENT, mReadExternalStorageEnforced ? "1" : "0");
+            serializer.endTag(null, TAG_READ_EXTERNAL_STORAGE);
+        }
+
+        serializer.startTag(null, "permission-trees");
+        for (BasePermission bp : mPermissionTrees.values()) {
+            writePermissionLPr(serializer, bp);
+        }
+        serializer.endTag(null, "permission-trees");
+
+        serializer.startTag(null, "permissions");
+        for (BasePermission bp : mPermissions.values()) {
+            writePermissionLPr(serializer, bp);
+        }
+        serializer.endTag(null, "permissions");
+
+        for (final PackageSetting pkg : mPackages.values()) {
+            writePackageLPr(serializer, pkg);
+        }
+
+        for (final PackageSetting pkg : mDisabledSysPackages.values()) {
+            writeDisabledSysPackageLPr(serializer, pkg);
+        }
+
+        for (final SharedUserSetting usr : mSharedUsers.values()) {
+            serializer.startTag(null, "shared-user");
+            serializer.attribute(null, ATTR_NAME, usr.name);
+            serializer.attribute(null, "userId",
+                    Integer.toString(usr.userId));
+            usr.signatures.writeXml(serializer, "sigs", mPastSignatures);
+            writePermissionsLPr(serializer, usr.getPermissionsState()
+                    .getInstallPermissionStates());
+            serializer.endTag(null, "shared-user");
+        }
+
+        if (mPackagesToBeCleaned.size() > 0) {
+            for (PackageCleanItem item : mPackagesToBeCleaned) {
+                final String userStr = Integer.toString(item.userId);
+                serializer.startTag(null, "cleaning-package");
+                serializer.attribute(null, ATTR_NAME, item.packageName);
+                serializer.attribute(null, ATTR_CODE, item.andCode ? "true" : "false");
+                serializer.attribute(null, ATTR_USER, userStr);
+                serializer.endTag(null, "cleaning-package");
+            }
+        }
+
+        if (mRenamedPackages.size() > 0) {
+            for (Map.Entry<String, String> e : mRenamedPackages.entrySet()) {
+                serializer.startTag(null, "renamed-package");
+                serializer.attribute(null, "new", e.getKey());
+                serializer.attribute(null, "old", e.getValue());
+                serializer.endTag(null, "renamed-package");
+            }
+        }
+
+        final int numIVIs = mRestoredIntentFilterVerifications.size();
+        if (numIVIs > 0) {
+            if (DEBUG_DOMAIN_VERIFICATION) {
+                Slog.i(TAG, "Writing restored-ivi entries to packages.xml");
+            }
+            serializer.startTag(null, "restored-ivi");
+            for (int i = 0; i < numIVIs; i++) {
+                IntentFilterVerificationInfo ivi = mRestoredIntentFilterVerifications.valueAt(i);
+                writeDomainVerificationsLPr(serializer, ivi);
+            }
+            serializer.endTag(null, "restored-ivi");
+        } else {
+            if (DEBUG_DOMAIN_VERIFICATION) {
+                Slog.i(TAG, "  no restored IVI entries to write");
+            }
+        }
+
+        mKeySetManagerService.writeKeySetManagerServiceLPr(serializer);
+
+        serializer.endTag(null, "packages");
+
+        serializer.endDocument();
+        serializer.flush();
+    }
+
     private void writeKernelRemoveUserLPr(int userId) {
         if (mKernelMappingFilename == null) return;
 
@@ -2721,82 +2772,108 @@ final class Settings {
             userIds = ArrayUtils.appendInt(userIds, creatingUserId);
         }
 
+        final StringBuilder list = new StringBuilder(Math.max(mLastPackageListLength, 1024));
+        StringBuilder sb = new StringBuilder();
+        for (final PackageSetting pkg : mPackages.values()) {
+            if (pkg.pkg == null || pkg.pkg.applicationInfo == null
+                    || pkg.pkg.applicationInfo.dataDir == null) {
+                if (!"android".equals(pkg.name)) {
+                    Slog.w(TAG, "Skipping " + pkg + " due to missing metadata");
+                }
+                continue;
+            }
+
+            final ApplicationInfo ai = pkg.pkg.applicationInfo;
+            final String dataPath = ai.dataDir;
+            final boolean isDebug = (ai.flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+            final int[] gids = pkg.getPermissionsState().computeGids(userIds);
+
+            // Avoid any application that has a space in its path.
+            if (dataPath.indexOf(' ') >= 0)
+                continue;
+
+            // we store on each line the following information for now:
+            //
+            // pkgName    - package name
+            // userId     - application-specific user id
+            // debugFlag  - 0 or 1 if the package is debuggable.
+            // dataPath   - path to package's data path
+            // seinfo     - seinfo label for the app (assigned at install time)
+            // gids       - supplementary gids this app launches with
+            //
+            // NOTE: We prefer not to expose all ApplicationInfo flags for now.
+            //
+            // DO NOT MODIFY THIS FORMAT UNLESS YOU CAN ALSO MODIFY ITS USERS
+            // FROM NATIVE CODE. AT THE MOMENT, LOOK AT THE FOLLOWING SOURCES:
+            //   frameworks/base/libs/packagelistparser
+            //   system/core/run-as/run-as.c
+            //
+            sb.setLength(0);
+            sb.append(ai.packageName);
+            sb.append(" ");
+            sb.append(ai.uid);
+            sb.append(isDebug ? " 1 " : " 0 ");
+            sb.append(dataPath);
+            sb.append(" ");
+            sb.append(ai.seInfo);
+            sb.append(" ");
+            if (gids != null && gids.length > 0) {
+                sb.append(gids[0]);
+                for (int i = 1; i < gids.length; i++) {
+                    sb.append(",");
+                    sb.append(gids[i]);
+                }
+            } else {
+                sb.append("none");
+            }
+            sb.append("\n");
+            list.append(sb);
+        }
+
+        // packages.list is re-derived on every settings write, but usually
+        // only changes when packages or their gids do; skip identical rewrites.
+        final byte[] contents = list.toString().getBytes(Charset.defaultCharset());
+        final byte[] digest = digestOf(contents);
+        if (contents.length == mLastPackageListLength && digest != null
+                && MessageDigest.isEqual(digest, mLastPackageListDigest)
+                && mPackageListFilename.exists()) {
+            return;
+        }
+
         // Write package list file now, use a JournaledFile.
         File tempFile = new File(mPackageListFilename.getAbsolutePath() + ".tmp");
         JournaledFile journal = new JournaledFile(mPackageListFilename, tempFile);
 
         final File writeTarget = journal.chooseForWrite();
-        FileOutputStream fstr;
-        BufferedWriter writer = null;
+        FileOutputStream fstr = null;
         try {
             fstr = new FileOutputStream(writeTarget);
-            writer = new BufferedWriter(new OutputStreamWriter(fstr, Charset.defaultCharset()));
             FileUtils.setPermissions(fstr.getFD(), 0640, SYSTEM_UID, PACKAGE_INFO_GID);
-
-            StringBuilder sb = new StringBuilder();
-            for (final PackageSetting pkg : mPackages.values()) {
-                if (pkg.pkg == null || pkg.pkg.applicationInfo == null
-                        || pkg.pkg.applicationInfo.dataDir == null) {
-                    if (!"android".equals(pkg.name)) {
-                        Slog.w(TAG, "Skipping " + pkg + " due to missing metadata");
-                    }
-                    continue;
-                }
-
-                final ApplicationInfo ai = pkg.pkg.applicationInfo;
-                final String dataPath = ai.dataDir;
-                final boolean isDebug = (ai.flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
-                final int[] gids = pkg.getPermissionsState().computeGids(userIds);
-
-                // Avoid any application that has a space in its path.
-                if (dataPath.indexOf(' ') >= 0)
-                    continue;
-
-                // we store on each line the following information for now:
-                //
-                // pkgName    - package name
-                // userId     - application-specific user id
-                // debugFlag  - 0 or 1 if the package is debuggable.
-                // dataPath   - path to package's data path
-                // seinfo     - seinfo label for the app (assigned at install time)
-                // gids       - supplementary gids this app launches with
-                //
-                // NOTE: We prefer not to expose all ApplicationInfo flags for now.
-                //
-                // DO NOT MODIFY THIS FORMAT UNLESS YOU CAN ALSO MODIFY ITS USERS
-                // FROM NATIVE CODE. AT THE MOMENT, LOOK AT THE FOLLOWING SOURCES:
-                //   frameworks/base/libs/packagelistparser
-                //   system/core/run-as/run-as.c
-                //
-                sb.setLength(0);
-                sb.append(ai.packageName);
-                sb.append(" ");
-                sb.append(ai.uid);
-                sb.append(isDebug ? " 1 " : " 0 ");
-                sb.append(dataPath);
-                sb.append(" ");
-                sb.append(ai.seInfo);
-                sb.append(" ");
-                if (gids != null && gids.length > 0) {
-                    sb.append(gids[0]);
-                    for (int i = 1; i < gids.length; i++) {
-                        sb.append(",");
-                        sb.append(gids[i]);
-                    }
-                } else {
-                    sb.append("none");
-                }
-                sb.append("\n");
-                writer.append(sb);
-            }
-            writer.flush();
+            fstr.write(contents);
             FileUtils.sync(fstr);
-            writer.close();
+            fstr.close();
             journal.commit();
+            mLastPackageListLength = contents.length;
+            mLastPackageListDigest = digest;
         } catch (Exception e) {
             Slog.wtf(TAG, "Failed to write packages.list", e);
-            IoUtils.closeQuietly(writer);
+            IoUtils.closeQuietly(fstr);
             journal.rollback();
+            mLastPackageListLength = 0;
+            mLastPackageListDigest = null;
+        }
+    }
+
+    /**
+     * Returns the SHA-256 digest of {@code contents}, or null if it can't be
+     * computed, in which case callers always rewrite.
+     */
+    private static byte[] digestOf(byte[] contents) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(contents);
+        } catch (NoSuchAlgorithmException e) {
+            Slog.w(TAG, "SHA-256 unavailable", e);
+            return null;
         }
     }
 
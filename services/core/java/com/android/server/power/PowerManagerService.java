@@ -170,6 +170,7 @@ public final class PowerManagerService extends SystemService
     private static final int WAKE_LOCK_STAY_AWAKE = 1 << 5; // only set if already awake
     private static final int WAKE_LOCK_DOZE = 1 << 6;
     private static final int WAKE_LOCK_DRAW = 1 << 7;
+    private static final int WAKE_LOCK_SUMMARY_BITS = 8;
 
     // Summarizes the user activity state.
     private static final int USER_ACTIVITY_SCREEN_BRIGHT = 1 << 0;
@@ -266,6 +267,11 @@ public final class PowerManagerService extends SystemService
     // A bitfield that summarizes the state of all active wakelocks.
     private int mWakeLockSummary;
 
+    // Number of active wake locks contributing each WAKE_LOCK_* bit, indexed by bit
+    // position.  Kept up to date as wake locks are added, changed, disabled and removed
+    // so that the summary can be recomputed without walking every wake lock.
+    private final int[] mWakeLockSummaryCounts = new int[WAKE_LOCK_SUMMARY_BITS];
+
     // Have we scheduled a message to check for long wake locks?  This is when we will check.
     private long mNotifyLongScheduled;
 
@@ -1063,6 +1069,7 @@ public final class PowerManagerService extends SystemService
                     notifyWakeLockChangingLocked(wakeLock, flags, tag, packageName,
                             uid, pid, ws, historyTag);
                     wakeLock.updateProperties(flags, tag, packageName, ws, historyTag, uid, pid);
+                    updateWakeLockSummaryCountsLocked(wakeLock);
                 }
                 notifyAcquire = false;
             } else {
@@ -1082,6 +1089,7 @@ public final class PowerManagerService extends SystemService
                 }
                 mWakeLocks.add(wakeLock);
                 setWakeLockDisabledStateLocked(wakeLock);
+                updateWakeLockSummaryCountsLocked(wakeLock);
                 notifyAcquire = true;
             }
 
@@ -1172,6 +1180,7 @@ public final class PowerManagerService extends SystemService
 
     private void removeWakeLockLocked(WakeLock wakeLock, int index) {
         mWakeLocks.remove(index);
+        clearWakeLockSummaryCountsLocked(wakeLock);
         UidState state = wakeLock.mUidState;
         state.mNumWakeLocks--;
         if (state.mNumWakeLocks <= 0 &&
@@ -1660,20 +1669,31 @@ public final class PowerManagerService extends SystemService
             // by changes in wakefulness.
             final long now = SystemClock.uptimeMillis();
             int dirtyPhase2 = 0;
-            for (;;) {
-                int dirtyPhase1 = mDirty;
-                dirtyPhase2 |= dirtyPhase1;
-                mDirty = 0;
-
-                updateWakeLockSummaryLocked(dirtyPhase1);
-                updateUserActivitySummaryLocked(now, dirtyPhase1);
-                if (!updateWakefulnessLocked(dirtyPhase1)) {
-                    break;
+            Trace.traceBegin(Trace.TRACE_TAG_POWER, "updateWakefulness");
+            try {
+                for (;;) {
+                    int dirtyPhase1 = mDirty;
+                    dirtyPhase2 |= dirtyPhase1;
+                    mDirty = 0;
+
+                    updateWakeLockSummaryLocked(dirtyPhase1);
+                    updateUserActivitySummaryLocked(now, dirtyPhase1);
+                    if (!updateWakefulnessLocked(dirtyPhase1)) {
+                        break;
+                    }
                 }
+            } finally {
+                Trace.traceEnd(Trace.TRACE_TAG_POWER);
             }
 
             // Phase 2: Update display power state.
-            boolean displayBecameReady = updateDisplayPowerStateLocked(dirtyPhase2);
+            Trace.traceBegin(Trace.TRACE_TAG_POWER, "updateDisplayPowerState");
+            final boolean displayBecameReady;
+            try {
+                displayBecameReady = updateDisplayPowerStateLocked(dirtyPhase2);
+            } finally {
+                Trace.traceEnd(Trace.TRACE_TAG_POWER);
+            }
 
             // Phase 3: Update dream state (depends on display ready signal).
             updateDreamLocked(dirtyPhase2, displayBecameReady);
@@ -1823,35 +1843,9 @@ public final class PowerManagerService extends SystemService
     private void updateWakeLockSummaryLocked(int dirty) {
         if ((dirty & (DIRTY_WAKE_LOCKS | DIRTY_WAKEFULNESS)) != 0) {
             mWakeLockSummary = 0;
-
-            final int numWakeLocks = mWakeLocks.size();
-            for (int i = 0; i < numWakeLocks; i++) {
-                final WakeLock wakeLock = mWakeLocks.get(i);
-                switch (wakeLock.mFlags & PowerManager.WAKE_LOCK_LEVEL_MASK) {
-                    case PowerManager.PARTIAL_WAKE_LOCK:
-                        if (!wakeLock.mDisabled) {
-                            // We only respect this if the wake lock is not disabled.
-                            mWakeLockSummary |= WAKE_LOCK_CPU;
-                        }
-                        break;
-                    case PowerManager.FULL_WAKE_LOCK:
-                        mWakeLockSummary |= WAKE_LOCK_SCREEN_BRIGHT | WAKE_LOCK_BUTTON_BRIGHT;
-                        break;
-                    case PowerManager.SCREEN_BRIGHT_WAKE_LOCK:
-                        mWakeLockSummary |= WAKE_LOCK_SCREEN_BRIGHT;
-                        break;
-                    case PowerManager.SCREEN_DIM_WAKE_LOCK:
-                        mWakeLockSummary |= WAKE_LOCK_SCREEN_DIM;
-                        break;
-                    case PowerManager.PROXIMITY_SCREEN_OFF_WAKE_LOCK:
-                        mWakeLockSummary |= WAKE_LOCK_PROXIMITY_SCREEN_OFF;
-                        break;
-                    case PowerManager.DOZE_WAKE_LOCK:
-                        mWakeLockSummary |= WAKE_LOCK_DOZE;
-                        break;
-                    case PowerManager.DRAW_WAKE_LOCK:
-                        mWakeLockSummary |= WAKE_LOCK_DRAW;
-                        break;
+            for (int bit = 0; bit < WAKE_LOCK_SUMMARY_BITS; bit++) {
+                if (mWakeLockSummaryCounts[bit] > 0) {
+                    mWakeLockSummary |= 1 << bit;
                 }
             }
 
@@ -1888,6 +1882,64 @@ public final class PowerManagerService extends SystemService
         }
     }
 
+    /**
+     * Returns the WAKE_LOCK_* bits that a single wake lock contributes to the raw summary,
+     * before any adjustments for the current wakefulness.
+     */
+    @SuppressWarnings("deprecation")
+    private static int getWakeLockSummaryFlags(WakeLock wakeLock) {
+        switch (wakeLock.mFlags & PowerManager.WAKE_LOCK_LEVEL_MASK) {
+            case PowerManager.PARTIAL_WAKE_LOCK:
+                // We only respect this if the wake lock is not disabled.
+                return wakeLock.mDisabled ? 0 : WAKE_LOCK_CPU;
+            case PowerManager.FULL_WAKE_LOCK:
+                return WAKE_LOCK_SCREEN_BRIGHT | WAKE_LOCK_BUTTON_BRIGHT;
+            case PowerManager.SCREEN_BRIGHT_WAKE_LOCK:
+                return WAKE_LOCK_SCREEN_BRIGHT;
+            case PowerManager.SCREEN_DIM_WAKE_LOCK:
+                return WAKE_LOCK_SCREEN_DIM;
+            case PowerManager.PROXIMITY_SCREEN_OFF_WAKE_LOCK:
+                return WAKE_LOCK_PROXIMITY_SCREEN_OFF;
+            case PowerManager.DOZE_WAKE_LOCK:
+                return WAKE_LOCK_DOZE;
+            case PowerManager.DRAW_WAKE_LOCK:
+                return WAKE_LOCK_DRAW;
+        }
+        return 0;
+    }
+
+    /**
+     * Recomputes the contribution of a tracked wake lock to mWakeLockSummaryCounts and
+     * to the per-uid aggregates.  Must be called whenever its level or disabled state
+     * may have changed.
+     */
+    private void updateWakeLockSummaryCountsLocked(WakeLock wakeLock) {
+        clearWakeLockSummaryCountsLocked(wakeLock);
+        final int flags = getWakeLockSummaryFlags(wakeLock);
+        adjustWakeLockSummaryCountsLocked(flags, 1);
+        if ((flags & WAKE_LOCK_CPU) != 0) {
+            wakeLock.mUidState.mNumActivePartialWakeLocks++;
+        }
+        wakeLock.mSummaryFlags = flags;
+    }
+
+    private void clearWakeLockSummaryCountsLocked(WakeLock wakeLock) {
+        final int flags = wakeLock.mSummaryFlags;
+        adjustWakeLockSummaryCountsLocked(flags, -1);
+        if ((flags & WAKE_LOCK_CPU) != 0) {
+            wakeLock.mUidState.mNumActivePartialWakeLocks--;
+        }
+        wakeLock.mSummaryFlags = 0;
+    }
+
+    private void adjustWakeLockSummaryCountsLocked(int flags, int delta) {
+        for (int bit = 0; flags != 0; bit++, flags >>>= 1) {
+            if ((flags & 1) != 0) {
+                mWakeLockSummaryCounts[bit] += delta;
+            }
+        }
+    }
+
     void checkForLongWakeLocks() {
         synchronized (mLock) {
             final long now = SystemClock.uptimeMillis();
@@ -2947,6 +2999,7 @@ public final class PowerManagerService extends SystemService
                     == PowerManager.PARTIAL_WAKE_LOCK) {
                 if (setWakeLockDisabledStateLocked(wakeLock)) {
                     changed = true;
+                    updateWakeLockSummaryCountsLocked(wakeLock);
                     if (wakeLock.mDisabled) {
                         // This wake lock is no longer being respected.
                         notifyWakeLockReleasedLocked(wakeLock);
@@ -3348,6 +3401,8 @@ public final class PowerManagerService extends SystemService
                 else pw.print("INACTIVE ");
                 pw.print(" count=");
                 pw.print(state.mNumWakeLocks);
+                pw.print(" active=");
+                pw.print(state.mNumActivePartialWakeLocks);
                 pw.print(" state=");
                 pw.println(state.mProcState);
             }
@@ -3867,6 +3922,8 @@ public final class PowerManagerService extends SystemService
         public boolean mNotifiedAcquired;
         public boolean mNotifiedLong;
         public boolean mDisabled;
+        // WAKE_LOCK_* bits currently counted in mWakeLockSummaryCounts for this lock.
+        public int mSummaryFlags;
 
         public WakeLock(IBinder lock, int flags, String tag, String packageName,
                 WorkSource workSource, String historyTag, int ownerUid, int ownerPid,
@@ -4093,6 +4150,8 @@ public final class PowerManagerService extends SystemService
     static final class UidState {
         final int mUid;
         int mNumWakeLocks;
+        // Partial wake locks of this uid that are not disabled and so hold the cpu awake.
+        int mNumActivePartialWakeLocks;
         int mProcState;
         boolean mActive;
 
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class IntentResolverTest {
+
+    private static class TestFilter extends IntentFilter {
+        final String packageName;
+
+        TestFilter(String packageName, String action) {
+            super(action);
+            this.packageName = packageName;
+        }
+    }
+
+    private static class TestResolver extends IntentResolver<TestFilter, TestFilter> {
+        TestResolver(boolean cached) {
+            if (cached) {
+                enableQueryCache(16);
+            }
+        }
+
+        @Override
+        protected boolean isPackageForFilter(String packageName, TestFilter filter) {
+            return packageName.equals(filter.packageName);
+        }
+
+        @Override
+        protected TestFilter[] newArray(int size) {
+            return new TestFilter[size];
+        }
+    }
+
+    private static TestFilter newFilter(String packageName, String action, String scheme) {
+        final TestFilter filter = new TestFilter(packageName, action);
+        filter.addCategory(Intent.CATEGORY_DEFAULT);
+        if (scheme != null) {
+            filter.addDataScheme(scheme);
+        }
+        return filter;
+    }
+
+    private static void assertSameResults(TestResolver expected, TestResolver actual,
+            Intent intent) {
+        final List<TestFilter> expectedList = expected.queryIntent(intent, null, true, 0);
+        final List<TestFilter> actualList = actual.queryIntent(intent, null, true, 0);
+        assertEquals(expectedList, actualList);
+    }
+
+    @Test
+    public void testCachedQueryMatchesUncached() {
+        final TestResolver plain = new TestResolver(false);
+        final TestResolver cached = new TestResolver(true);
+        final TestFilter[] filters = {
+                newFilter("a", Intent.ACTION_VIEW, "http"),
+                newFilter("b", Intent.ACTION_VIEW, "http"),
+                newFilter("c", Intent.ACTION_SEND, null),
+                newFilter("d", Intent.ACTION_MAIN, null),
+        };
+        for (TestFilter f : filters) {
+            plain.addFilter(f);
+            cached.addFilter(f);
+        }
+
+        final Intent view = new Intent(Intent.ACTION_VIEW, Uri.parse("http://example.com"));
+        final Intent send = new Intent(Intent.ACTION_SEND);
+        for (int i = 0; i < 3; i++) {
+            assertSameResults(plain, cached, view);
+            assertSameResults(plain, cached, send);
+        }
+        assertEquals(2, cached.queryIntent(view, null, true, 0).size());
+
+        // Package restrictions are applied after the cached matching step.
+        final Intent viewInA = new Intent(view).setPackage("a");
+        assertSameResults(plain, cached, viewInA);
+        assertEquals(1, cached.queryIntent(viewInA, null, true, 0).size());
+    }
+
+    @Test
+    public void testCacheInvalidatedOnFilterChanges() {
+        final TestResolver cached = new TestResolver(true);
+        final TestFilter first = newFilter("a", Intent.ACTION_SEND, null);
+        cached.addFilter(first);
+
+        final Intent send = new Intent(Intent.ACTION_SEND);
+        assertEquals(1, cached.queryIntent(send, null, true, 0).size());
+
+        final TestFilter second = newFilter("b", Intent.ACTION_SEND, null);
+        cached.addFilter(second);
+        assertEquals(2, cached.queryIntent(send, null, true, 0).size());
+
+        cached.removeFilter(first);
+        final List<TestFilter> results = cached.queryIntent(send, null, true, 0);
+        assertEquals(1, results.size());
+        assertTrue(results.contains(second));
+    }
+}
@@ -19,6 +19,7 @@ package com.android.server.content;
 import java.util.ArrayList;
 
 import android.database.ContentObserver;
+import android.database.IContentObserver;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.UserHandle;
@@ -97,4 +98,39 @@ public class ObserverNodeTest extends AndroidTestCase {
             calls.clear();
         }
     }
+
+    public void testDuplicateObserverCallsRemoved() {
+        final int myUserHandle = UserHandle.myUserId();
+
+        ObserverNode root = new ObserverNode("");
+        final IContentObserver shared = new TestObserver().getContentObserver();
+        root.addObserverLocked(Uri.parse("content://c/"), shared, true, root,
+                0, 0, myUserHandle);
+        root.addObserverLocked(Uri.parse("content://c/a/"), shared, true, root,
+                0, 0, myUserHandle);
+        root.addObserverLocked(Uri.parse("content://c/a/"), new TestObserver().getContentObserver(),
+                true, root, 0, 0, myUserHandle);
+
+        ArrayList<ObserverCall> calls = new ArrayList<ObserverCall>();
+        root.collectObserversLocked(Uri.parse("content://c/a/1"), 0, null, false, 0,
+                myUserHandle, calls);
+        assertEquals(3, calls.size());
+
+        ContentService.removeDuplicateObserverCalls(calls);
+        assertEquals(2, calls.size());
+        assertSame(shared, calls.get(0).mObserver);
+    }
+
+    public void testDuplicateObserverCallsKeptAcrossUsers() {
+        final IContentObserver shared = new TestObserver().getContentObserver();
+        ArrayList<ObserverCall> calls = new ArrayList<ObserverCall>();
+        calls.add(new ObserverCall(null, shared, false, 0));
+        calls.add(new ObserverCall(null, shared, false, 10));
+        calls.add(new ObserverCall(null, shared, false, 0));
+
+        ContentService.removeDuplicateObserverCalls(calls);
+        assertEquals(2, calls.size());
+        assertEquals(0, calls.get(0).mObserverUserId);
+        assertEquals(10, calls.get(1).mObserverUserId);
+    }
 }
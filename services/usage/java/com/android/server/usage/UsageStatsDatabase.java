@@ -384,6 +384,14 @@ class UsageStatsDatabase {
          * @param accumulatedResult The list to which to add extracted data.
          */
         void combine(IntervalStats stats, boolean mutable, List<T> accumulatedResult);
+
+        /**
+         * Whether {@link #combine} looks at {@link IntervalStats#events}. If not, the events
+         * are not loaded when reading stats from disk.
+         */
+        default boolean needsEvents() {
+            return true;
+        }
     }
 
     /**
@@ -443,7 +451,7 @@ class UsageStatsDatabase {
                 }
 
                 try {
-                    UsageStatsXml.read(f, stats);
+                    UsageStatsXml.read(f, stats, !combiner.needsEvents());
                     if (beginTime < stats.endTime) {
                         combiner.combine(stats, false, results);
                     }
@@ -56,11 +56,23 @@ public class UsageStatsXml {
     }
 
     public static void read(AtomicFile file, IntervalStats statsOut) throws IOException {
+        read(file, statsOut, false);
+    }
+
+    /**
+     * Reads the stats in the given file.
+     *
+     * @param skipEvents If true, the event log is skipped over instead of being loaded and
+     *                   {@link IntervalStats#events} is left empty. Events are by far the
+     *                   largest part of daily files and most queries don't look at them.
+     */
+    public static void read(AtomicFile file, IntervalStats statsOut, boolean skipEvents)
+            throws IOException {
         try {
             FileInputStream in = file.openRead();
             try {
                 statsOut.beginTime = parseBeginTime(file);
-                read(in, statsOut);
+                read(in, statsOut, skipEvents);
                 statsOut.lastTimeSaved = file.getLastModifiedTime();
             } finally {
                 try {
@@ -88,6 +100,11 @@ public class UsageStatsXml {
     }
 
     static void read(InputStream in, IntervalStats statsOut) throws IOException {
+        read(in, statsOut, false);
+    }
+
+    private static void read(InputStream in, IntervalStats statsOut, boolean skipEvents)
+            throws IOException {
         XmlPullParser parser = Xml.newPullParser();
         try {
             parser.setInput(in, "utf-8");
@@ -96,7 +113,7 @@ public class UsageStatsXml {
             try {
                 switch (Integer.parseInt(versionStr)) {
                     case 1:
-                        UsageStatsXmlV1.read(parser, statsOut);
+                        UsageStatsXmlV1.read(parser, statsOut, skipEvents);
                         break;
 
                     default:
@@ -290,6 +290,15 @@ final class UsageStatsXmlV1 {
      */
     public static void read(XmlPullParser parser, IntervalStats statsOut)
             throws XmlPullParserException, IOException {
+        read(parser, statsOut, false);
+    }
+
+    /**
+     * Same as {@link #read(XmlPullParser, IntervalStats)}, optionally skipping over the
+     * event log.
+     */
+    public static void read(XmlPullParser parser, IntervalStats statsOut, boolean skipEvents)
+            throws XmlPullParserException, IOException {
         statsOut.packageStats.clear();
         statsOut.configurations.clear();
         statsOut.activeConfiguration = null;
@@ -319,7 +328,9 @@ final class UsageStatsXmlV1 {
                     break;
 
                 case EVENT_TAG:
-                    loadEvent(parser, statsOut);
+                    if (!skipEvents) {
+                        loadEvent(parser, statsOut);
+                    }
                     break;
             }
         }
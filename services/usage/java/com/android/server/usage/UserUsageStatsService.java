@@ -211,6 +211,11 @@ class UserUsageStatsService {
                         accResult.add(new UsageStats(stats.packageStats.valueAt(i)));
                     }
                 }
+
+                @Override
+                public boolean needsEvents() {
+                    return false;
+                }
             };
 
     private static final StatCombiner<ConfigurationStats> sConfigStatsCombiner =
@@ -228,6 +233,11 @@ class UserUsageStatsService {
                         accResult.add(new ConfigurationStats(stats.configurations.valueAt(i)));
                     }
                 }
+
+                @Override
+                public boolean needsEvents() {
+                    return false;
+                }
             };
 
     /**